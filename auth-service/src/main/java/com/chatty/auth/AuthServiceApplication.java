@@ -3,14 +3,22 @@ package com.chatty.auth;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 import org.springframework.cloud.openfeign.EnableFeignClients;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableDiscoveryClient
 @EnableFeignClients
+@EnableAsync
+@EnableScheduling
 public class AuthServiceApplication {
     public static void main(String[] args) {
-        SpringApplication.run(AuthServiceApplication.class, args);
+        SpringApplication application = new SpringApplication(AuthServiceApplication.class);
+        // Keeps startup steps for /actuator/startup so slow beans show up after a deploy
+        application.setApplicationStartup(new BufferingApplicationStartup(4096));
+        application.run(args);
     }
 }
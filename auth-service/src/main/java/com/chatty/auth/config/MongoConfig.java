@@ -0,0 +1,34 @@
+
+package com.chatty.auth.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Explicit Mongo connection-pool limits. With virtual threads Tomcat no longer caps how
+ * many requests run at once, so this pool is what bounds the load on the database;
+ * requests beyond it wait up to {@code max-wait} for a connection and then fail.
+ */
+@Configuration
+public class MongoConfig {
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer connectionPoolCustomizer(
+            @Value("${mongodb.pool.max-size:100}") int maxSize,
+            @Value("${mongodb.pool.min-size:10}") int minSize,
+            @Value("${mongodb.pool.max-connecting:2}") int maxConnecting,
+            @Value("${mongodb.pool.max-wait:2s}") Duration maxWait,
+            @Value("${mongodb.pool.max-idle-time:5m}") Duration maxIdleTime) {
+        return builder -> builder.applyToConnectionPoolSettings(pool -> pool
+                .maxSize(maxSize)
+                .minSize(minSize)
+                .maxConnecting(maxConnecting)
+                .maxWaitTime(maxWait.toMillis(), TimeUnit.MILLISECONDS)
+                .maxConnectionIdleTime(maxIdleTime.toMillis(), TimeUnit.MILLISECONDS));
+    }
+}
@@ -2,7 +2,9 @@
 package com.chatty.auth.config;
 
 import com.chatty.auth.security.JwtAuthenticationEntryPoint;
+import com.chatty.auth.security.InternalRequestFilter;
 import com.chatty.auth.security.JwtAuthenticationFilter;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -24,14 +26,19 @@ public class SecurityConfig {
 
     private final JwtAuthenticationEntryPoint jwtAuthenticationEntryPoint;
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
+    private final InternalRequestFilter internalRequestFilter;
 
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http.csrf(AbstractHttpConfigurer::disable)
             .authorizeHttpRequests(authorizeRequests -> 
                 authorizeRequests
+                    // The request dispatch was already authorized; this covers SSE completion
+                    .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                     .requestMatchers("/api/v1/auth/**").permitAll()
+                    // Only reachable on the management port, which stays inside the cluster
                     .requestMatchers("/actuator/**").permitAll()
+                    .requestMatchers("/internal/**").hasAuthority(InternalRequestFilter.AUTHORITY)
                     .anyRequest().authenticated()
             )
             .exceptionHandling(exceptionHandling -> 
@@ -44,6 +51,7 @@ public class SecurityConfig {
             );
 
         http.addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
+        http.addFilterBefore(internalRequestFilter, JwtAuthenticationFilter.class);
 
         return http.build();
     }
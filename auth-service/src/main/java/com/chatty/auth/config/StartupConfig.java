@@ -0,0 +1,34 @@
+
+package com.chatty.auth.config;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.MethodIntrospector;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.annotation.Schedules;
+
+import java.util.Set;
+
+/**
+ * Keeps beans that run on their own eager when the {@code fast-startup} profile turns on
+ * lazy initialization. Nothing ever asks for the usage recorder or the change publisher,
+ * so if they were lazy their scheduled tasks would never be registered.
+ */
+@Configuration
+public class StartupConfig {
+
+    @Bean
+    public static LazyInitializationExcludeFilter scheduledBeansExcludeFilter() {
+        return (beanName, beanDefinition, beanType) -> beanType != null && hasScheduledMethods(beanType);
+    }
+
+    private static boolean hasScheduledMethods(Class<?> beanType) {
+        return !MethodIntrospector.selectMethods(beanType, (MethodIntrospector.MetadataLookup<Set<Scheduled>>) method -> {
+            Set<Scheduled> scheduled = AnnotatedElementUtils.getMergedRepeatableAnnotations(
+                    method, Scheduled.class, Schedules.class);
+            return scheduled.isEmpty() ? null : scheduled;
+        }).isEmpty();
+    }
+}
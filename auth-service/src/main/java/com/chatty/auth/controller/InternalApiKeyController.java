@@ -0,0 +1,84 @@
+
+package com.chatty.auth.controller;
+
+import com.chatty.auth.dto.ApiKeyChangeEvent;
+import com.chatty.auth.dto.ApiKeyUsageCount;
+import com.chatty.auth.dto.ApiKeyUsageFlushRequest;
+import com.chatty.auth.dto.ApiKeyValidationResponse;
+import com.chatty.auth.service.ApiKeyBloomFilterService;
+import com.chatty.auth.service.ApiKeyChangePublisher;
+import com.chatty.auth.service.ApiKeyQuotaService;
+import com.chatty.auth.service.ApiKeyService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+
+/**
+ * Service-to-service API key endpoints used by the gateway. These are not exposed
+ * through any gateway route.
+ */
+@RestController
+@RequestMapping("/internal/v1/api-keys")
+@RequiredArgsConstructor
+@Slf4j
+public class InternalApiKeyController {
+
+    private static final String BLOOM_FILTER_KEYS_HEADER = "X-Bloom-Filter-Keys";
+
+    private final ApiKeyService apiKeyService;
+    private final ApiKeyQuotaService apiKeyQuotaService;
+    private final ApiKeyChangePublisher apiKeyChangePublisher;
+    private final ApiKeyBloomFilterService apiKeyBloomFilterService;
+
+    @GetMapping("/snapshot")
+    public ResponseEntity<List<ApiKeyChangeEvent>> getActiveApiKeySnapshot() {
+        return ResponseEntity.ok(apiKeyService.getActiveApiKeySnapshot());
+    }
+
+    @GetMapping(path = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamApiKeyChanges() {
+        if (!apiKeyChangePublisher.isStreaming()) {
+            log.warn("Refusing API key change subscription, change stream is not active");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(apiKeyChangePublisher.subscribe());
+    }
+
+    @GetMapping(path = "/bloom-filter", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> getBloomFilter(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        ApiKeyBloomFilterService.Snapshot snapshot = apiKeyBloomFilterService.getSnapshot();
+        if (snapshot == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+
+        String eTag = "\"" + snapshot.version() + "\"";
+        if (eTag.equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .lastModified(snapshot.builtAt())
+                .header(BLOOM_FILTER_KEYS_HEADER, String.valueOf(snapshot.keyCount()))
+                .body(snapshot.bytes());
+    }
+
+    @GetMapping("/{apiKey}")
+    public ResponseEntity<ApiKeyValidationResponse> getApiKeyDetails(@PathVariable String apiKey) {
+        log.debug("Resolving API key details");
+        return ResponseEntity.ok(apiKeyService.getApiKeyDetails(apiKey));
+    }
+
+    @PostMapping("/usage")
+    public ResponseEntity<List<ApiKeyUsageCount>> applyUsageDeltas(@Valid @RequestBody ApiKeyUsageFlushRequest request) {
+        log.debug("Received {} API key usage deltas", request.getDeltas().size());
+        return ResponseEntity.ok(apiKeyQuotaService.applyUsageDeltas(request.getDeltas()));
+    }
+}
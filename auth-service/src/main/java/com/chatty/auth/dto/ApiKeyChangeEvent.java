@@ -0,0 +1,23 @@
+
+package com.chatty.auth.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ApiKeyChangeEvent {
+    private ChangeType type;
+    private String apiKeyId;
+    private String apiKeyHash; // ApiKeyDigest of the key; null for REMOVE events of deleted documents
+    private ApiKeyValidationResponse details;
+    
+    public enum ChangeType {
+        UPSERT,
+        REMOVE
+    }
+}
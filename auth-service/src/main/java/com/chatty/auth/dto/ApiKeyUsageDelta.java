@@ -0,0 +1,28 @@
+
+package com.chatty.auth.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ApiKeyUsageDelta {
+    @NotBlank(message = "API key ID is required")
+    private String apiKeyId;
+    
+    @NotBlank(message = "Period is required")
+    private String period;
+    
+    @NotNull(message = "Period end is required")
+    private Instant periodEnd;
+    
+    private long delta;
+}
@@ -0,0 +1,20 @@
+
+package com.chatty.auth.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ApiKeyUsageFlushRequest {
+    @NotNull(message = "Deltas are required")
+    private List<@Valid ApiKeyUsageDelta> deltas;
+}
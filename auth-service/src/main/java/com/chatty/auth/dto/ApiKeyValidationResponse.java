@@ -0,0 +1,24 @@
+
+package com.chatty.auth.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ApiKeyValidationResponse {
+    private String apiKeyId;
+    private String customerId;
+    private boolean valid;
+    private Instant expiresAt;
+    private int rateLimitPerMinute;
+    private int dailyLimit;
+    private int monthlyLimit;
+    private String environment;
+}
@@ -24,6 +24,7 @@ public class ApiKey {
     private String apiSecret;
     private boolean active;
     private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
     private LocalDateTime expiresAt;
     private LocalDateTime lastUsedAt;
     private ApiKeyPermissions permissions;
@@ -0,0 +1,28 @@
+
+package com.chatty.auth.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "api_key_usage")
+public class ApiKeyUsage {
+    @Id
+    private String id; // apiKeyId + ":" + period
+    private String apiKeyId;
+    private String period; // e.g. day:2024-05-01, month:2024-05
+    private long count;
+    private Instant updatedAt;
+    @Indexed(expireAfterSeconds = 0)
+    private Instant expireAt;
+}
@@ -5,6 +5,7 @@ import com.chatty.auth.model.ApiKey;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,4 +14,5 @@ public interface ApiKeyRepository extends MongoRepository<ApiKey, String> {
     List<ApiKey> findByCustomerId(String customerId);
     Optional<ApiKey> findByApiKey(String apiKey);
     boolean existsByKeyNameAndCustomerId(String keyName, String customerId);
+    List<ApiKey> findByActiveTrueAndExpiresAtAfter(LocalDateTime now);
 }
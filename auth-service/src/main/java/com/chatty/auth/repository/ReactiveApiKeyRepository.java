@@ -0,0 +1,16 @@
+
+package com.chatty.auth.repository;
+
+import com.chatty.auth.model.ApiKey;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking access to API keys for the validation listener. Everything else keeps
+ * using {@link ApiKeyRepository}.
+ */
+@Repository
+public interface ReactiveApiKeyRepository extends ReactiveMongoRepository<ApiKey, String> {
+    Mono<ApiKey> findByApiKey(String apiKey);
+}
@@ -0,0 +1,82 @@
+
+package com.chatty.auth.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Verifies the {@code X-Auth-Identity} assertion the gateway signs after checking the
+ * caller's JWT. See the gateway's {@code IdentityAssertionSigner} for the format.
+ */
+@Component
+public class IdentityAssertionVerifier {
+
+    public static final String HEADER = "X-Auth-Identity";
+
+    private static final String VERSION = "v1";
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final ThreadLocal<Mac> macs;
+
+    public IdentityAssertionVerifier(@Value("${security.identity.secret-key}") String secretKey) {
+        SecretKeySpec key = new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(ALGORITHM + " is not available", e);
+            }
+        });
+    }
+
+    /**
+     * Returns the asserted identity, or {@code null} if the assertion is malformed, was
+     * not signed with the shared key, or has expired.
+     */
+    public Identity verify(String assertion) {
+        if (assertion == null) {
+            return null;
+        }
+        int macStart = assertion.lastIndexOf('.');
+        String[] fields = assertion.split("\\.", -1);
+        if (macStart < 0 || fields.length != 6 || !VERSION.equals(fields[0])) {
+            return null;
+        }
+
+        try {
+            byte[] expected = macs.get().doFinal(assertion.substring(0, macStart).getBytes(StandardCharsets.UTF_8));
+            byte[] actual = Base64.getUrlDecoder().decode(fields[5]);
+            if (!MessageDigest.isEqual(expected, actual)) {
+                return null;
+            }
+
+            Instant expiresAt = Instant.ofEpochSecond(Long.parseLong(fields[4]));
+            if (!expiresAt.isAfter(Instant.now())) {
+                return null;
+            }
+            List<String> roles = fields[3].isEmpty() ? List.of() : Arrays.asList(fields[3].split(","));
+            return new Identity(decode(fields[1]), decode(fields[2]), roles, expiresAt);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String decode(String value) {
+        return value.isEmpty() ? null : new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+    }
+
+    public record Identity(String subject, String customerId, List<String> roles, Instant expiresAt) {
+    }
+}
@@ -0,0 +1,49 @@
+
+package com.chatty.auth.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Authenticates calls to {@code /internal/**} that carry a valid {@code X-Internal-Auth}
+ * header, granting {@link #AUTHORITY}. Requests without one are left unauthenticated,
+ * and {@link com.chatty.auth.config.SecurityConfig} rejects them.
+ */
+@Component
+@RequiredArgsConstructor
+public class InternalRequestFilter extends OncePerRequestFilter {
+
+    public static final String AUTHORITY = "INTERNAL_SERVICE";
+
+    private static final String INTERNAL_PATH_PREFIX = "/internal/";
+    private static final String PRINCIPAL = "gateway-service";
+
+    private final InternalRequestVerifier internalRequestVerifier;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(INTERNAL_PATH_PREFIX);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (internalRequestVerifier.verify(request.getMethod(), request.getRequestURI(),
+                request.getHeader(InternalRequestVerifier.HEADER))) {
+            SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                    PRINCIPAL, null, List.of(new SimpleGrantedAuthority(AUTHORITY))));
+        }
+        filterChain.doFilter(request, response);
+    }
+}
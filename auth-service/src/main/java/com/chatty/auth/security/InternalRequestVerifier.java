@@ -0,0 +1,72 @@
+
+package com.chatty.auth.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Verifies the {@code X-Internal-Auth} header the gateway signs on its calls to
+ * {@code /internal/**}. See the gateway's {@code InternalRequestSigner} for the format.
+ * A header is accepted for the method and path it was signed for, within the allowed
+ * clock skew of its issue time.
+ */
+@Component
+public class InternalRequestVerifier {
+
+    public static final String HEADER = "X-Internal-Auth";
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final Duration maxClockSkew;
+    private final ThreadLocal<Mac> macs;
+
+    public InternalRequestVerifier(@Value("${security.identity.secret-key}") String secretKey,
+                                   @Value("${security.internal.max-clock-skew:60s}") Duration maxClockSkew) {
+        SecretKeySpec key = new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.maxClockSkew = maxClockSkew;
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(ALGORITHM + " is not available", e);
+            }
+        });
+    }
+
+    public boolean verify(String method, String path, String header) {
+        if (header == null) {
+            return false;
+        }
+        int separator = header.indexOf('.');
+        if (separator <= 0) {
+            return false;
+        }
+
+        try {
+            String issuedAt = header.substring(0, separator);
+            Instant issued = Instant.ofEpochSecond(Long.parseLong(issuedAt));
+            if (Duration.between(issued, Instant.now()).abs().compareTo(maxClockSkew) > 0) {
+                return false;
+            }
+
+            String payload = "internal." + method + "." + path + "." + issuedAt;
+            byte[] expected = macs.get().doFinal(payload.getBytes(StandardCharsets.UTF_8));
+            byte[] actual = Base64.getUrlDecoder().decode(header.substring(separator + 1));
+            return MessageDigest.isEqual(expected, actual);
+        } catch (IllegalArgumentException | DateTimeException e) {
+            return false;
+        }
+    }
+}
@@ -5,9 +5,12 @@ import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import com.chatty.auth.security.IdentityAssertionVerifier.Identity;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
@@ -21,11 +24,41 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final CustomUserDetailsService userDetailsService;
+    private final IdentityAssertionVerifier identityAssertionVerifier;
+    private final UserStatusCache userStatusCache;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) 
             throws ServletException, IOException {
         
+        // The gateway already verified the JWT; a valid assertion saves the parse and user lookup.
+        // Tokens issued before roles were added as a claim carry none, so those still take the
+        // user lookup below rather than authenticating without authorities.
+        Identity identity = identityAssertionVerifier.verify(request.getHeader(IdentityAssertionVerifier.HEADER));
+        if (identity != null && !identity.roles().isEmpty()
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
+            // The JWT outlives the account's status, so a deactivated user is left unauthenticated
+            if (!userStatusCache.isUsable(identity.subject())) {
+                filterChain.doFilter(request, response);
+                return;
+            }
+            UserDetails userDetails = User.withUsername(identity.subject())
+                    .password("")
+                    .authorities(identity.roles().stream()
+                            .map(SimpleGrantedAuthority::new)
+                            .toList())
+                    .build();
+            UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
+                    userDetails,
+                    null,
+                    userDetails.getAuthorities()
+            );
+            authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+            SecurityContextHolder.getContext().setAuthentication(authToken);
+            filterChain.doFilter(request, response);
+            return;
+        }
+        
         final String authHeader = request.getHeader("Authorization");
         
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
@@ -0,0 +1,46 @@
+
+package com.chatty.auth.security;
+
+import com.chatty.auth.model.User;
+import com.chatty.auth.repository.UserRepository;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whether a user may still act on their token: they exist and are verified and active.
+ * Requests authenticated by the gateway's identity assertion skip the user lookup, so
+ * this is how they still see a deactivated account. Answers are cached for
+ * {@code security.identity.user-status-ttl}, which bounds how long a deactivated user
+ * keeps access while saving the lookup on most requests.
+ */
+@Component
+public class UserStatusCache {
+
+    private final LoadingCache<String, Boolean> usable;
+
+    public UserStatusCache(UserRepository userRepository,
+                           @Value("${security.identity.user-status-ttl:30s}") Duration ttl,
+                           @Value("${security.identity.user-status-max-size:100000}") long maxSize) {
+        this.usable = CacheBuilder.newBuilder()
+                .expireAfterWrite(ttl.toMillis(), TimeUnit.MILLISECONDS)
+                .maximumSize(maxSize)
+                .build(CacheLoader.from((String email) -> userRepository.findByEmail(email)
+                        .map(user -> user.isVerified() && user.isActive())
+                        .orElse(false)));
+    }
+
+    public boolean isUsable(String email) {
+        return usable.getUnchecked(email);
+    }
+
+    /** Drops the cached answer for a user whose status was just changed on this instance. */
+    public void invalidate(User user) {
+        usable.invalidate(user.getEmail());
+    }
+}
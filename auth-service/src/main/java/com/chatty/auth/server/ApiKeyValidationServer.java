@@ -0,0 +1,153 @@
+
+package com.chatty.auth.server;
+
+import com.chatty.auth.repository.ReactiveApiKeyRepository;
+import com.chatty.auth.security.InternalRequestVerifier;
+import com.chatty.auth.service.ApiKeyService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.netflix.appinfo.ApplicationInfoManager;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+import reactor.netty.resources.LoopResources;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Serves {@code GET /internal/v1/api-keys/{apiKey}} on a separate port, the
+ * highest-volume call auth-service handles. It runs on its own Reactor Netty event loops
+ * next to Tomcat and reads keys through the reactive Mongo driver. Validation traffic
+ * therefore never holds a servlet thread that logins and registrations need. The bound
+ * port is published in the Eureka instance metadata as {@code validation-port}, where
+ * the gateway's {@code auth-service-validation} load balancer picks it up. The same
+ * endpoint stays available on the main port. Spring Security does not cover this
+ * listener, so it checks the gateway's {@code X-Internal-Auth} header itself.
+ */
+@Component
+@Slf4j
+public class ApiKeyValidationServer implements SmartLifecycle {
+
+    private static final String VALIDATION_PORT_METADATA = "validation-port";
+    private static final String API_KEY_DETAILS_PATH = "/internal/v1/api-keys/{apiKey}";
+    // Eureka registers at phase 0; starting first puts the port in the first registration
+    private static final int PHASE = -1;
+
+    private final ReactiveApiKeyRepository reactiveApiKeyRepository;
+    private final ApiKeyService apiKeyService;
+    private final InternalRequestVerifier internalRequestVerifier;
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<ApplicationInfoManager> applicationInfoManager;
+    private final boolean enabled;
+    private final int port;
+    private final int workerThreads;
+    private final Duration shutdownTimeout;
+
+    private volatile LoopResources loopResources;
+    private volatile DisposableServer server;
+
+    public ApiKeyValidationServer(ReactiveApiKeyRepository reactiveApiKeyRepository,
+                                  ApiKeyService apiKeyService,
+                                  InternalRequestVerifier internalRequestVerifier,
+                                  ObjectMapper objectMapper,
+                                  ObjectProvider<ApplicationInfoManager> applicationInfoManager,
+                                  @Value("${api-key.validation.enabled:true}") boolean enabled,
+                                  @Value("${api-key.validation.port:8092}") int port,
+                                  @Value("${api-key.validation.worker-threads:2}") int workerThreads,
+                                  @Value("${api-key.validation.shutdown-timeout:10s}") Duration shutdownTimeout) {
+        this.reactiveApiKeyRepository = reactiveApiKeyRepository;
+        this.apiKeyService = apiKeyService;
+        this.internalRequestVerifier = internalRequestVerifier;
+        this.objectMapper = objectMapper;
+        this.applicationInfoManager = applicationInfoManager;
+        this.enabled = enabled;
+        this.port = port;
+        this.workerThreads = workerThreads;
+        this.shutdownTimeout = shutdownTimeout;
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            log.info("API key validation listener is disabled, validation is served by Tomcat only");
+            return;
+        }
+
+        loopResources = LoopResources.create("api-key-validation", 1, workerThreads, true);
+        server = HttpServer.create()
+                .port(port)
+                .runOn(loopResources)
+                .route(routes -> routes.get(API_KEY_DETAILS_PATH, this::getApiKeyDetails))
+                .bindNow();
+
+        applicationInfoManager.ifAvailable(manager -> manager.registerAppMetadata(
+                Map.of(VALIDATION_PORT_METADATA, String.valueOf(server.port()))));
+        log.info("API key validation listener started on port {}", server.port());
+    }
+
+    @Override
+    public void stop() {
+        DisposableServer current = server;
+        server = null;
+        if (current != null) {
+            current.disposeNow(shutdownTimeout);
+        }
+        if (loopResources != null) {
+            loopResources.disposeLater().block(shutdownTimeout);
+            loopResources = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return server != null;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    private Mono<Void> getApiKeyDetails(HttpServerRequest request, HttpServerResponse response) {
+        if (!internalRequestVerifier.verify(request.method().name(), rawPath(request),
+                request.requestHeaders().get(InternalRequestVerifier.HEADER))) {
+            return response.status(HttpResponseStatus.UNAUTHORIZED).send();
+        }
+        return reactiveApiKeyRepository.findByApiKey(request.param("apiKey"))
+                .map(apiKey -> response
+                        .header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+                        .sendByteArray(Mono.just(toJson(apiKeyService.resolveApiKeyDetails(apiKey))))
+                        .then())
+                // Deferred so the 404 status is only set once the lookup came back empty
+                .switchIfEmpty(Mono.fromSupplier(() -> response.status(HttpResponseStatus.NOT_FOUND).send()))
+                .flatMap(send -> send)
+                .onErrorResume(e -> {
+                    log.warn("API key validation failed: {}", e.getMessage());
+                    return response.status(HttpResponseStatus.INTERNAL_SERVER_ERROR).send().then();
+                });
+    }
+
+    private static String rawPath(HttpServerRequest request) {
+        String uri = request.uri();
+        int query = uri.indexOf('?');
+        return query < 0 ? uri : uri.substring(0, query);
+    }
+
+    private byte[] toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
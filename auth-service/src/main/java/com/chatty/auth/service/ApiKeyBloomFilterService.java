@@ -0,0 +1,148 @@
+
+package com.chatty.auth.service;
+
+import com.chatty.auth.model.ApiKey;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hashing;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Maintains a Bloom filter of every active API key for the gateways, which use it to
+ * reject keys that were never issued without calling this service. It holds each key's
+ * {@link ApiKeyDigest} rather than the key itself. The filter is rebuilt from Mongo
+ * periodically, so revoked keys eventually drop out, and newly generated keys are added
+ * immediately so they are never rejected in between.
+ */
+@Service
+@Slf4j
+public class ApiKeyBloomFilterService {
+
+    private final MongoTemplate mongoTemplate;
+    private final double falsePositiveProbability;
+    private final long minimumExpectedKeys;
+
+    // Rebuilds run on the scheduler pool and after a change stream restart, one at a time
+    private final Object rebuildLock = new Object();
+
+    private BloomFilter<CharSequence> filter;
+    // Keys added while a rebuild streams Mongo, replayed into the rebuilt filter
+    private List<String> addedDuringRebuild;
+    private long keyCount;
+    private Instant builtAt;
+    private volatile Snapshot snapshot;
+
+    public ApiKeyBloomFilterService(MongoTemplate mongoTemplate,
+                                    @Value("${api-key.bloom-filter.false-positive-probability:0.01}") double falsePositiveProbability,
+                                    @Value("${api-key.bloom-filter.minimum-expected-keys:10000}") long minimumExpectedKeys) {
+        this.mongoTemplate = mongoTemplate;
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.minimumExpectedKeys = minimumExpectedKeys;
+    }
+
+    /**
+     * Returns the latest serialized filter, or {@code null} if it has not been built yet.
+     */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    @Scheduled(fixedDelayString = "${api-key.bloom-filter.rebuild-interval-ms:300000}")
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            rebuildFromMongo();
+        }
+    }
+
+    private void rebuildFromMongo() {
+        Query activeKeys = Query.query(Criteria.where("active").is(true));
+        activeKeys.fields().include("apiKey");
+        synchronized (this) {
+            addedDuringRebuild = new ArrayList<>();
+        }
+
+        long count = 0;
+        try {
+            // Leave headroom for keys generated before the next rebuild
+            long expectedKeys = Math.max(minimumExpectedKeys, mongoTemplate.count(activeKeys, ApiKey.class) * 2);
+            BloomFilter<CharSequence> rebuilt = BloomFilter.create(
+                    Funnels.stringFunnel(StandardCharsets.UTF_8), expectedKeys, falsePositiveProbability);
+
+            try (Stream<ApiKey> apiKeys = mongoTemplate.stream(activeKeys, ApiKey.class)) {
+                for (ApiKey apiKey : (Iterable<ApiKey>) apiKeys::iterator) {
+                    if (apiKey.getApiKey() != null) {
+                        rebuilt.put(ApiKeyDigest.of(apiKey.getApiKey()));
+                        count++;
+                    }
+                }
+            }
+
+            synchronized (this) {
+                for (String apiKeyHash : addedDuringRebuild) {
+                    if (rebuilt.put(apiKeyHash)) {
+                        count++;
+                    }
+                }
+                filter = rebuilt;
+                keyCount = count;
+                builtAt = Instant.now();
+                publish();
+            }
+        } finally {
+            synchronized (this) {
+                addedDuringRebuild = null;
+            }
+        }
+
+        log.info("Rebuilt API key Bloom filter with {} keys, {} bytes", count, snapshot.bytes().length);
+    }
+
+    public synchronized void add(String apiKey) {
+        String apiKeyHash = ApiKeyDigest.of(apiKey);
+        if (addedDuringRebuild != null) {
+            // The rebuild may have streamed past this key already
+            addedDuringRebuild.add(apiKeyHash);
+        }
+        if (filter == null) {
+            // Not built yet; the first rebuild will pick the key up from Mongo or the replay
+            return;
+        }
+        if (filter.put(apiKeyHash)) {
+            keyCount++;
+            publish();
+        }
+    }
+
+    private void publish() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            filter.writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] bytes = out.toByteArray();
+        snapshot = new Snapshot(Hashing.sha256().hashBytes(bytes).toString(), bytes, keyCount, builtAt);
+    }
+
+    /**
+     * {@code version} is a hash of the filter bytes, so every instance serving the same
+     * filter hands out the same ETag and a gateway switching instances still gets a 304.
+     */
+    public record Snapshot(String version, byte[] bytes, long keyCount, Instant builtAt) {
+    }
+}
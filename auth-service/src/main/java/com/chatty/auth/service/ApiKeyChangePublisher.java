@@ -0,0 +1,227 @@
+
+package com.chatty.auth.service;
+
+import com.chatty.auth.dto.ApiKeyChangeEvent;
+import com.chatty.auth.model.ApiKey;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.messaging.ChangeStreamRequest;
+import org.springframework.data.mongodb.core.messaging.DefaultMessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.Message;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.Subscription;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tails the {@code api_keys} collection through a Mongo change stream and fans every
+ * create, revoke and expiry change out to the gateways subscribed over SSE. Change
+ * streams require Mongo to run as a replica set; without one, subscriptions are refused
+ * and gateways keep validating keys remotely. If the stream fails, subscribers are
+ * disconnected, since they miss changes from then on, and the stream is re-registered
+ * with backoff. Gateways reconnect once it is back and reload the snapshot.
+ */
+@Component
+@Slf4j
+public class ApiKeyChangePublisher {
+
+    private static final String API_KEYS_COLLECTION = "api_keys";
+    private static final String CONNECTED_EVENT = "connected";
+    private static final String CHANGE_EVENT = "change";
+    private static final String LAST_USED_AT_FIELD = "lastUsedAt";
+
+    /**
+     * Drops updates that only set {@code lastUsedAt}. ApiKeyUsageRecorder writes those
+     * for every key in use, and the looked-up document would otherwise be streamed to
+     * every gateway each flush although nothing they hold has changed.
+     */
+    private static final Document IGNORE_LAST_USED_UPDATES = ignoreLastUsedUpdates();
+
+    private final MongoTemplate mongoTemplate;
+    private final ApiKeyService apiKeyService;
+    private final ApiKeyBloomFilterService apiKeyBloomFilterService;
+    private final Duration restartBackoff;
+    private final Duration maxRestartBackoff;
+    private final List<SseEmitter> subscribers = new CopyOnWriteArrayList<>();
+
+    private MessageListenerContainer container;
+    private volatile Subscription subscription;
+    private Duration nextRestartBackoff;
+    private Instant nextRestartAt = Instant.MIN;
+    private boolean restarted;
+
+    public ApiKeyChangePublisher(MongoTemplate mongoTemplate,
+                                 ApiKeyService apiKeyService,
+                                 ApiKeyBloomFilterService apiKeyBloomFilterService,
+                                 @Value("${api-key.changes.restart-backoff:5s}") Duration restartBackoff,
+                                 @Value("${api-key.changes.max-restart-backoff:5m}") Duration maxRestartBackoff) {
+        this.mongoTemplate = mongoTemplate;
+        this.apiKeyService = apiKeyService;
+        this.apiKeyBloomFilterService = apiKeyBloomFilterService;
+        this.restartBackoff = restartBackoff;
+        this.maxRestartBackoff = maxRestartBackoff;
+        this.nextRestartBackoff = restartBackoff;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        container = new DefaultMessageListenerContainer(mongoTemplate);
+        subscription = register();
+        container.start();
+    }
+
+    /**
+     * Re-registers the change stream if it has stopped, waiting twice as long after each
+     * failed attempt. Once it is running again the Bloom filter is rebuilt, since keys
+     * generated on other instances in the meantime never reached it.
+     */
+    @Scheduled(fixedDelayString = "${api-key.changes.health-check-interval-ms:5000}")
+    public synchronized void restartIfStopped() {
+        if (container == null) {
+            return;
+        }
+        if (isStreaming()) {
+            nextRestartBackoff = restartBackoff;
+            if (restarted) {
+                restarted = false;
+                log.info("API key change stream restarted");
+                apiKeyBloomFilterService.rebuild();
+            }
+            return;
+        }
+
+        Instant now = Instant.now();
+        if (now.isBefore(nextRestartAt)) {
+            return;
+        }
+        nextRestartAt = now.plus(nextRestartBackoff);
+        Duration doubled = nextRestartBackoff.multipliedBy(2);
+        nextRestartBackoff = doubled.compareTo(maxRestartBackoff) > 0 ? maxRestartBackoff : doubled;
+
+        log.info("Re-registering API key change stream");
+        container.remove(subscription);
+        subscription = register();
+        restarted = true;
+    }
+
+    public boolean isStreaming() {
+        return subscription != null && subscription.isActive();
+    }
+
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(0L);
+        emitter.onCompletion(() -> subscribers.remove(emitter));
+        emitter.onTimeout(() -> subscribers.remove(emitter));
+        emitter.onError(e -> subscribers.remove(emitter));
+
+        try {
+            // Tells the subscriber it is now receiving changes and can safely load the snapshot
+            emitter.send(SseEmitter.event().name(CONNECTED_EVENT).data("", MediaType.TEXT_PLAIN));
+            subscribers.add(emitter);
+            log.info("Gateway subscribed to API key changes, {} subscribers", subscribers.size());
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    @Scheduled(fixedRateString = "${api-key.changes.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        subscribers.forEach(emitter -> send(emitter, SseEmitter.event().comment("heartbeat")));
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (container != null) {
+            container.stop();
+        }
+        subscribers.forEach(SseEmitter::complete);
+        subscribers.clear();
+    }
+
+    private Subscription register() {
+        ChangeStreamRequest<ApiKey> request = ChangeStreamRequest.builder(this::onChange)
+                .collection(API_KEYS_COLLECTION)
+                .fullDocumentLookup(FullDocument.UPDATE_LOOKUP)
+                .filter(IGNORE_LAST_USED_UPDATES)
+                .build();
+        return container.register(request, ApiKey.class, this::onStreamError);
+    }
+
+    private void onStreamError(Throwable e) {
+        log.error("API key change stream failed", e);
+        // Subscribers would silently miss changes from here on; ending their streams makes
+        // them fall back to remote validation and resync once the stream is back
+        subscribers.forEach(SseEmitter::complete);
+        subscribers.clear();
+    }
+
+    private void onChange(Message<ChangeStreamDocument<Document>, ApiKey> message) {
+        ApiKeyChangeEvent event;
+        ApiKey apiKey = message.getBody();
+
+        if (apiKey != null) {
+            event = apiKeyService.toChangeEvent(apiKey);
+            if (event.getType() == ApiKeyChangeEvent.ChangeType.UPSERT) {
+                // Keys generated on other instances reach this instance's filter here
+                apiKeyBloomFilterService.add(apiKey.getApiKey());
+            }
+        } else {
+            ChangeStreamDocument<Document> raw = message.getRaw();
+            if (raw == null || raw.getDocumentKey() == null) {
+                return;
+            }
+            event = ApiKeyChangeEvent.builder()
+                    .type(ApiKeyChangeEvent.ChangeType.REMOVE)
+                    .apiKeyId(toId(raw.getDocumentKey().get("_id")))
+                    .build();
+        }
+
+        log.debug("Publishing API key {} event to {} subscribers", event.getType(), subscribers.size());
+        subscribers.forEach(emitter -> send(emitter, SseEmitter.event().name(CHANGE_EVENT).data(event, MediaType.APPLICATION_JSON)));
+    }
+
+    private void send(SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            subscribers.remove(emitter);
+            emitter.completeWithError(e);
+        }
+    }
+
+    private static Document ignoreLastUsedUpdates() {
+        Document otherUpdatedFields = new Document("$filter", new Document()
+                .append("input", new Document("$objectToArray", "$updateDescription.updatedFields"))
+                .append("cond", new Document("$ne", List.of("$$this.k", LAST_USED_AT_FIELD))));
+        Document removedFields = new Document("$ifNull", List.of("$updateDescription.removedFields", List.of()));
+
+        return new Document("$match", new Document("$expr", new Document("$or", List.of(
+                new Document("$ne", List.of("$operationType", "update")),
+                new Document("$gt", List.of(new Document("$size", removedFields), 0)),
+                new Document("$gt", List.of(new Document("$size", otherUpdatedFields), 0))))));
+    }
+
+    private String toId(BsonValue id) {
+        if (id == null) {
+            return null;
+        }
+        return id.isObjectId() ? id.asObjectId().getValue().toHexString() : id.asString().getValue();
+    }
+}
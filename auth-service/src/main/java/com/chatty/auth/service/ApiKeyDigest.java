@@ -0,0 +1,27 @@
+
+package com.chatty.auth.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * SHA-256 digest of an API key, base64url encoded. It stands in for the key in the
+ * replica snapshot, the change stream and the Bloom filter, so gateways never hold the
+ * raw keys of every customer. gateway-service computes the same digest.
+ */
+public final class ApiKeyDigest {
+
+    private ApiKeyDigest() {
+    }
+
+    public static String of(String apiKey) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(apiKey.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
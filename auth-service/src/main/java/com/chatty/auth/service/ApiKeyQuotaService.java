@@ -0,0 +1,80 @@
+
+package com.chatty.auth.service;
+
+import com.chatty.auth.dto.ApiKeyUsageCount;
+import com.chatty.auth.dto.ApiKeyUsageDelta;
+import com.chatty.auth.model.ApiKeyUsage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Durable request counters behind the gateway's API key quotas. Gateways accumulate
+ * counts in memory and periodically push the deltas here; the merged totals are returned
+ * so every gateway replica converges on the same view of each key's usage. A flush is
+ * also the only sign of use for keys the gateways validate from their replica, so it
+ * records {@code lastUsedAt} for every key it counts.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ApiKeyQuotaService {
+
+    private static final Duration COUNTER_RETENTION = Duration.ofDays(1);
+
+    private final MongoTemplate mongoTemplate;
+    private final ApiKeyUsageRecorder apiKeyUsageRecorder;
+
+    public List<ApiKeyUsageCount> applyUsageDeltas(List<ApiKeyUsageDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return List.of();
+        }
+
+        Instant now = Instant.now();
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ApiKeyUsage.class);
+        deltas.forEach(delta -> bulkOperations.upsert(
+                Query.query(Criteria.where("_id").is(usageId(delta.getApiKeyId(), delta.getPeriod()))),
+                new Update()
+                        .inc("count", delta.getDelta())
+                        .set("updatedAt", now)
+                        .setOnInsert("apiKeyId", delta.getApiKeyId())
+                        .setOnInsert("period", delta.getPeriod())
+                        .setOnInsert("expireAt", delta.getPeriodEnd().plus(COUNTER_RETENTION))));
+        bulkOperations.execute();
+
+        LocalDateTime usedAt = LocalDateTime.now();
+        deltas.stream()
+                .filter(delta -> delta.getDelta() > 0)
+                .forEach(delta -> apiKeyUsageRecorder.recordUsage(delta.getApiKeyId(), usedAt));
+
+        List<String> ids = deltas.stream()
+                .map(delta -> usageId(delta.getApiKeyId(), delta.getPeriod()))
+                .distinct()
+                .collect(Collectors.toList());
+
+        log.debug("Applied {} API key usage deltas", deltas.size());
+
+        return mongoTemplate.find(Query.query(Criteria.where("_id").in(ids)), ApiKeyUsage.class).stream()
+                .map(usage -> ApiKeyUsageCount.builder()
+                        .apiKeyId(usage.getApiKeyId())
+                        .period(usage.getPeriod())
+                        .count(usage.getCount())
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    private String usageId(String apiKeyId, String period) {
+        return apiKeyId + ":" + period;
+    }
+}
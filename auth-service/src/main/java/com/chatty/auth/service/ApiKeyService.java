@@ -2,7 +2,9 @@
 package com.chatty.auth.service;
 
 import com.chatty.auth.client.CustomerServiceClient;
+import com.chatty.auth.dto.ApiKeyChangeEvent;
 import com.chatty.auth.dto.ApiKeyResponse;
+import com.chatty.auth.dto.ApiKeyValidationResponse;
 import com.chatty.auth.dto.GenerateApiKeyRequest;
 import com.chatty.auth.exception.ApiKeyAlreadyExistsException;
 import com.chatty.auth.exception.ApiKeyNotFoundException;
@@ -15,6 +17,7 @@ import org.springframework.stereotype.Service;
 
 import java.security.SecureRandom;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.Base64;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -28,6 +31,8 @@ public class ApiKeyService {
     private static final String API_KEY_SECRET_PREFIX = "sec_";
     private final ApiKeyRepository apiKeyRepository;
     private final CustomerServiceClient customerServiceClient;
+    private final ApiKeyUsageRecorder apiKeyUsageRecorder;
+    private final ApiKeyBloomFilterService apiKeyBloomFilterService;
     
     public ApiKeyResponse generateApiKey(GenerateApiKeyRequest request) {
         log.info("Generating API key for customer: {}", request.getCustomerId());
@@ -66,6 +71,7 @@ public class ApiKeyService {
                 .build();
         
         ApiKey savedApiKey = apiKeyRepository.save(newApiKey);
+        apiKeyBloomFilterService.add(savedApiKey.getApiKey());
         
         log.info("API key generated successfully for customer: {}", request.getCustomerId());
         
@@ -104,20 +110,70 @@ public class ApiKeyService {
         ApiKey existingApiKey = apiKeyRepository.findByApiKey(apiKey)
                 .orElseThrow(() -> new ApiKeyNotFoundException("API key not found"));
         
-        if (!existingApiKey.isActive()) {
-            log.warn("API key is inactive: {}", apiKey);
+        if (!isUsable(existingApiKey)) {
             return false;
         }
         
-        if (existingApiKey.getExpiresAt().isBefore(LocalDateTime.now())) {
-            log.warn("API key is expired: {}", apiKey);
-            return false;
+        apiKeyUsageRecorder.recordUsage(existingApiKey.getId(), LocalDateTime.now());
+        
+        log.info("API key validation successful");
+        
+        return true;
+    }
+    
+    public ApiKeyValidationResponse getApiKeyDetails(String apiKey) {
+        ApiKey existingApiKey = apiKeyRepository.findByApiKey(apiKey)
+                .orElseThrow(() -> new ApiKeyNotFoundException("API key not found"));
+        
+        return resolveApiKeyDetails(existingApiKey);
+    }
+    
+    /**
+     * Validation details for a key that has already been loaded, recording its use when
+     * it is valid. Does no I/O, so the reactive validation listener can call it directly.
+     */
+    public ApiKeyValidationResponse resolveApiKeyDetails(ApiKey apiKey) {
+        boolean valid = isUsable(apiKey);
+        if (valid) {
+            apiKeyUsageRecorder.recordUsage(apiKey.getId(), LocalDateTime.now());
         }
         
-        existingApiKey.setLastUsedAt(LocalDateTime.now());
-        apiKeyRepository.save(existingApiKey);
+        return mapToValidationResponse(apiKey, valid);
+    }
+    
+    public List<ApiKeyChangeEvent> getActiveApiKeySnapshot() {
+        List<ApiKey> activeApiKeys = apiKeyRepository.findByActiveTrueAndExpiresAtAfter(LocalDateTime.now());
         
-        log.info("API key validation successful");
+        log.info("Serving snapshot of {} active API keys", activeApiKeys.size());
+        
+        return activeApiKeys.stream()
+                .map(this::toChangeEvent)
+                .collect(Collectors.toList());
+    }
+    
+    public ApiKeyChangeEvent toChangeEvent(ApiKey apiKey) {
+        boolean usable = apiKey.isActive()
+                && apiKey.getExpiresAt() != null
+                && apiKey.getExpiresAt().isAfter(LocalDateTime.now());
+        
+        return ApiKeyChangeEvent.builder()
+                .type(usable ? ApiKeyChangeEvent.ChangeType.UPSERT : ApiKeyChangeEvent.ChangeType.REMOVE)
+                .apiKeyId(apiKey.getId())
+                .apiKeyHash(apiKey.getApiKey() != null ? ApiKeyDigest.of(apiKey.getApiKey()) : null)
+                .details(mapToValidationResponse(apiKey, usable))
+                .build();
+    }
+    
+    private boolean isUsable(ApiKey apiKey) {
+        if (!apiKey.isActive()) {
+            log.warn("API key {} is inactive", apiKey.getId());
+            return false;
+        }
+        
+        if (apiKey.getExpiresAt().isBefore(LocalDateTime.now())) {
+            log.warn("API key {} is expired", apiKey.getId());
+            return false;
+        }
         
         return true;
     }
@@ -161,4 +217,17 @@ public class ApiKeyService {
                 .adminAccess(apiKey.getPermissions() != null && apiKey.getPermissions().isAdminAccess())
                 .build();
     }
+    
+    private ApiKeyValidationResponse mapToValidationResponse(ApiKey apiKey, boolean valid) {
+        return ApiKeyValidationResponse.builder()
+                .apiKeyId(apiKey.getId())
+                .customerId(apiKey.getCustomerId())
+                .valid(valid)
+                .expiresAt(apiKey.getExpiresAt() != null ? apiKey.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant() : null)
+                .rateLimitPerMinute(apiKey.getPermissions() != null ? apiKey.getPermissions().getRateLimitPerMinute() : 0)
+                .dailyLimit(apiKey.getDailyLimit())
+                .monthlyLimit(apiKey.getMonthlyLimit())
+                .environment(apiKey.getEnvironment())
+                .build();
+    }
 }
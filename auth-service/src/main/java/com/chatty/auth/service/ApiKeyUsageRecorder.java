@@ -0,0 +1,93 @@
+
+package com.chatty.auth.service;
+
+import com.chatty.auth.model.ApiKey;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Coalesces {@code lastUsedAt} updates per API key in memory and writes them to Mongo
+ * as periodic unordered bulk {@code $set} operations, keeping validation free of writes.
+ */
+@Component
+@Slf4j
+public class ApiKeyUsageRecorder {
+
+    private final MongoTemplate mongoTemplate;
+    private final int maxBatchSize;
+    private final Map<String, LocalDateTime> pendingLastUsed = new ConcurrentHashMap<>();
+
+    public ApiKeyUsageRecorder(MongoTemplate mongoTemplate,
+                               @Value("${api-key.last-used.max-batch-size:500}") int maxBatchSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public void recordUsage(String apiKeyId, LocalDateTime usedAt) {
+        pendingLastUsed.merge(apiKeyId, usedAt, ApiKeyUsageRecorder::latest);
+    }
+
+    @Scheduled(fixedDelayString = "${api-key.last-used.flush-interval-ms:5000}")
+    public void flush() {
+        int flushed;
+        do {
+            flushed = flushBatch();
+        } while (flushed == maxBatchSize);
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        log.info("Flushing {} pending API key usage updates", pendingLastUsed.size());
+        flush();
+    }
+
+    private int flushBatch() {
+        Map<String, LocalDateTime> batch = new HashMap<>();
+        for (Map.Entry<String, LocalDateTime> entry : pendingLastUsed.entrySet()) {
+            if (batch.size() >= maxBatchSize) {
+                break;
+            }
+            // Only take the value we saw; a newer timestamp recorded meanwhile stays pending
+            if (pendingLastUsed.remove(entry.getKey(), entry.getValue())) {
+                batch.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ApiKey.class);
+        batch.forEach((apiKeyId, usedAt) -> bulkOperations.updateOne(
+                Query.query(Criteria.where("_id").is(apiKeyId)),
+                Update.update("lastUsedAt", usedAt)));
+
+        try {
+            bulkOperations.execute();
+            log.debug("Flushed lastUsedAt for {} API keys", batch.size());
+            return batch.size();
+        } catch (DataAccessException e) {
+            log.error("Failed to flush API key usage, will retry on next run", e);
+            batch.forEach((apiKeyId, usedAt) -> pendingLastUsed.merge(apiKeyId, usedAt, ApiKeyUsageRecorder::latest));
+            return 0;
+        }
+    }
+
+    private static LocalDateTime latest(LocalDateTime current, LocalDateTime candidate) {
+        return candidate.isAfter(current) ? candidate : current;
+    }
+}
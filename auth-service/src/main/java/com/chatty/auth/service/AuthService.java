@@ -9,6 +9,7 @@ import com.chatty.auth.model.Role;
 import com.chatty.auth.model.User;
 import com.chatty.auth.repository.UserRepository;
 import com.chatty.auth.security.JwtService;
+import com.chatty.auth.security.UserStatusCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -18,6 +19,8 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
@@ -32,6 +35,7 @@ public class AuthService {
     private final AuthenticationManager authenticationManager;
     private final CustomerServiceClient customerServiceClient;
     private final EmailService emailService;
+    private final UserStatusCache userStatusCache;
 
     public UserRegistrationResponse registerUser(UserRegistrationRequest request) {
         log.info("Registering user with email: {}", request.getEmail());
@@ -93,6 +97,7 @@ public class AuthService {
         user.setUpdatedAt(LocalDateTime.now());
         
         userRepository.save(user);
+        userStatusCache.invalidate(user);
         
         // Verify customer as well
         customerServiceClient.verifyCustomer(user.getCustomerId());
@@ -117,11 +122,15 @@ public class AuthService {
                 .withUsername(user.getEmail())
                 .password(user.getPassword())
                 .authorities(user.getRoles().stream()
-                        .map(role -> role.name())
-                        .toList())
+                        .map(Role::name)
+                        .toArray(String[]::new))
                 .build();
         
-        String token = jwtService.generateToken(userDetails);
+        // Carried into the gateway's signed identity assertion for downstream services
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("roles", user.getRoles().stream().map(Role::name).toList());
+        claims.put("customerId", user.getCustomerId());
+        String token = jwtService.generateToken(claims, userDetails);
         
         log.info("User logged in successfully: {}", user.getEmail());
         
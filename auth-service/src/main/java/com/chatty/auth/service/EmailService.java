@@ -3,8 +3,8 @@ package com.chatty.auth.service;
 
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.scheduling.annotation.Async;
@@ -17,12 +17,16 @@ import java.util.HashMap;
 import java.util.Map;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class EmailService {
 
     private final JavaMailSender mailSender;
 
+    // Nothing at startup sends mail, so the sender and Jakarta Mail load on first use
+    public EmailService(@Lazy JavaMailSender mailSender) {
+        this.mailSender = mailSender;
+    }
+
     @Async
     public void sendVerificationEmail(String to, String token) {
         try {
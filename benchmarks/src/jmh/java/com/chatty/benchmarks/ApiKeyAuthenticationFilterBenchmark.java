@@ -0,0 +1,90 @@
+
+package com.chatty.benchmarks;
+
+import com.chatty.gateway.dto.ApiKeyDetails;
+import com.chatty.gateway.filter.ApiKeyAuthenticationFilter;
+import com.chatty.gateway.service.ApiKeyBloomFilter;
+import com.chatty.gateway.service.ApiKeyService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * {@link ApiKeyAuthenticationFilter} with the key resolution stubbed out, so only the
+ * filter's own work and the reactive plumbing around it are measured.
+ */
+@State(Scope.Benchmark)
+public class ApiKeyAuthenticationFilterBenchmark {
+
+    private static final GatewayFilterChain CHAIN = exchange -> Mono.empty();
+    private static final String VALID_KEY = "chatty_valid";
+    private static final String REVOKED_KEY = "chatty_revoked";
+
+    private ApiKeyAuthenticationFilter filter;
+
+    @Setup
+    public void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        WebClient unused = WebClient.create("http://localhost");
+        ApiKeyDetails valid = ApiKeyDetails.builder()
+                .apiKeyId("key-1")
+                .customerId("customer-1")
+                .valid(true)
+                .expiresAt(Instant.now().plus(Duration.ofDays(365)))
+                .rateLimitPerMinute(600)
+                .environment("PROD")
+                .build();
+
+        ApiKeyService apiKeyService = new StubApiKeyService(unused, meterRegistry, valid);
+        // Disabled, so it never loads and lets every key through
+        ApiKeyBloomFilter bloomFilter = new ApiKeyBloomFilter(unused, meterRegistry, false, Duration.ofSeconds(1), Duration.ofMinutes(10));
+        filter = new ApiKeyAuthenticationFilter(apiKeyService, bloomFilter);
+    }
+
+    @Benchmark
+    public void validKey() {
+        filter.filter(exchange(VALID_KEY), CHAIN).block();
+    }
+
+    @Benchmark
+    public void invalidKey() {
+        filter.filter(exchange(REVOKED_KEY), CHAIN).block();
+    }
+
+    @Benchmark
+    public void missingKey() {
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/api/v1/chatbot/messages")), CHAIN).block();
+    }
+
+    private static ServerWebExchange exchange(String apiKey) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get("/api/v1/chatbot/messages")
+                .header("X-API-KEY", apiKey));
+    }
+
+    private static class StubApiKeyService extends ApiKeyService {
+
+        private final Mono<ApiKeyDetails> valid;
+        private final Mono<ApiKeyDetails> invalid = Mono.just(ApiKeyDetails.invalid());
+
+        StubApiKeyService(WebClient webClient, SimpleMeterRegistry meterRegistry, ApiKeyDetails valid) {
+            super(webClient, null, meterRegistry, 1, Duration.ofSeconds(1), Duration.ofSeconds(1));
+            this.valid = Mono.just(valid);
+        }
+
+        @Override
+        public Mono<ApiKeyDetails> resolveApiKey(String apiKey) {
+            return VALID_KEY.equals(apiKey) ? valid : invalid;
+        }
+    }
+}
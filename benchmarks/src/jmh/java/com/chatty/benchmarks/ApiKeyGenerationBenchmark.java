@@ -0,0 +1,60 @@
+
+package com.chatty.benchmarks;
+
+import com.chatty.auth.repository.ApiKeyRepository;
+import com.chatty.auth.service.ApiKeyService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Proxy;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * {@code ApiKeyService.generateUniqueApiKey}, which creates a new {@link SecureRandom} on
+ * every call, with the repository stubbed to report no collisions. {@link #sharedSecureRandom()}
+ * builds the same key from one shared instance, for comparison.
+ */
+@State(Scope.Benchmark)
+public class ApiKeyGenerationBenchmark {
+
+    private final SecureRandom sharedRandom = new SecureRandom();
+
+    private ApiKeyService apiKeyService;
+    private MethodHandle generateUniqueApiKey;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        ApiKeyRepository repository = (ApiKeyRepository) Proxy.newProxyInstance(
+                ApiKeyRepository.class.getClassLoader(),
+                new Class<?>[]{ApiKeyRepository.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("findByApiKey")) {
+                        return Optional.empty();
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+
+        apiKeyService = new ApiKeyService(repository, null, null, null);
+        generateUniqueApiKey = MethodHandles.privateLookupIn(ApiKeyService.class, MethodHandles.lookup())
+                .findVirtual(ApiKeyService.class, "generateUniqueApiKey", MethodType.methodType(String.class));
+    }
+
+    @Benchmark
+    public String generateUniqueApiKey() throws Throwable {
+        return (String) generateUniqueApiKey.invokeExact(apiKeyService);
+    }
+
+    @Benchmark
+    public String sharedSecureRandom() {
+        byte[] bytes = new byte[24];
+        sharedRandom.nextBytes(bytes);
+        return "chatty_" + Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,39 @@
+
+package com.chatty.benchmarks;
+
+import com.chatty.auth.security.JwtService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token issuing in auth-service, as done on every login.
+ */
+@State(Scope.Benchmark)
+public class AuthJwtServiceBenchmark {
+
+    private JwtService jwtService;
+    private UserDetails userDetails;
+
+    @Setup
+    public void setUp() {
+        jwtService = new JwtService();
+        ReflectionTestUtils.setField(jwtService, "secretKey", GatewayJwtServiceBenchmark.SECRET_KEY);
+        ReflectionTestUtils.setField(jwtService, "jwtExpiration", TimeUnit.DAYS.toMillis(1));
+        userDetails = User.withUsername("user@example.com")
+                .password("unused")
+                .roles("USER")
+                .build();
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtService.generateToken(userDetails);
+    }
+}
@@ -0,0 +1,51 @@
+
+package com.chatty.benchmarks;
+
+import com.chatty.gateway.service.JwtService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gateway JWT handling: a full parse and signature check, against a lookup of a token
+ * that has already been verified.
+ */
+@State(Scope.Benchmark)
+public class GatewayJwtServiceBenchmark {
+
+    static final String SECRET_KEY = "404E635266556A586E3272357538782F413F4428472B4B6250645367566B5970";
+
+    private JwtService jwtService;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtService = new JwtService(SECRET_KEY, 10_000, new SimpleMeterRegistry());
+        token = Jwts.builder()
+                .setSubject("user@example.com")
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1)))
+                .signWith(Keys.hmacShaKeyFor(SECRET_KEY.getBytes()), SignatureAlgorithm.HS256)
+                .compact();
+        jwtService.verify(token);
+    }
+
+    @Benchmark
+    public String parse() {
+        return jwtService.extractClaim(token, Claims::getSubject);
+    }
+
+    @Benchmark
+    public JwtService.VerifiedToken verifyCached() {
+        return jwtService.verify(token);
+    }
+}
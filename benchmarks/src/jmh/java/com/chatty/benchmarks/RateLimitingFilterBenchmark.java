@@ -0,0 +1,60 @@
+
+package com.chatty.benchmarks;
+
+import com.chatty.gateway.filter.RateLimitingFilter;
+import com.chatty.gateway.service.TokenBucketRateLimiter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * {@link RateLimitingFilter#filter} on a single hot key. With a low limit nearly every
+ * request takes the rejection path; with a high one every request is let through.
+ * {@link #exchangeOnly()} is the cost of building the mock exchange, to subtract.
+ */
+@State(Scope.Benchmark)
+public class RateLimitingFilterBenchmark {
+
+    private static final GatewayFilterChain CHAIN = exchange -> Mono.empty();
+
+    @Param({"10", "1000000000"})
+    public int limitPerMinute;
+
+    private RateLimitingFilter filter;
+
+    @Setup
+    public void setUp() {
+        filter = new RateLimitingFilter(new TokenBucketRateLimiter(Duration.ofMinutes(5), 100_000), limitPerMinute);
+    }
+
+    @Benchmark
+    public ServerWebExchange exchangeOnly() {
+        return exchange();
+    }
+
+    @Benchmark
+    public void filter() {
+        filter.filter(exchange(), CHAIN).block();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void filterContended() {
+        filter.filter(exchange(), CHAIN).block();
+    }
+
+    private static ServerWebExchange exchange() {
+        return MockServerWebExchange.from(MockServerHttpRequest.get("/api/v1/chatbot/messages")
+                .header("X-API-KEY", "chatty_benchmark"));
+    }
+}
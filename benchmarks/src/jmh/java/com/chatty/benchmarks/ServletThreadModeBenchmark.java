@@ -0,0 +1,103 @@
+
+package com.chatty.benchmarks;
+
+import com.chatty.auth.config.VirtualThreadConfig;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServer;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bursts of requests against an embedded Tomcat whose handler blocks for
+ * {@link #latencyMillis}, the way auth-service and customer-service block on Mongo, Feign
+ * and SMTP. {@code platform} is Tomcat's default pool of 200 threads, and {@code virtual}
+ * applies {@link VirtualThreadConfig}. Each invocation sends {@link #concurrency}
+ * requests at once and waits for all of them. Once a burst is larger than the pool, the
+ * platform mode queues requests behind blocked threads.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ServletThreadModeBenchmark {
+
+    @Param({"platform", "virtual"})
+    public String threadMode;
+
+    @Param({"100", "1000"})
+    public int concurrency;
+
+    @Param({"20"})
+    public int latencyMillis;
+
+    private WebServer webServer;
+    private HttpClient httpClient;
+    private HttpRequest request;
+
+    @Setup
+    public void setUp() {
+        TomcatServletWebServerFactory factory = new TomcatServletWebServerFactory(0);
+        if ("virtual".equals(threadMode)) {
+            factory.addProtocolHandlerCustomizers(new VirtualThreadConfig().virtualThreadProtocolHandlerCustomizer());
+        }
+        webServer = factory.getWebServer(servletContext -> servletContext
+                .addServlet("blocking", new BlockingServlet(latencyMillis))
+                .addMapping("/"));
+        webServer.start();
+
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        request = HttpRequest.newBuilder(URI.create("http://localhost:" + webServer.getPort() + "/")).build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        httpClient.close();
+        webServer.stop();
+    }
+
+    @Benchmark
+    public int burst() {
+        CompletableFuture<?>[] responses = new CompletableFuture<?>[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            responses[i] = httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+        }
+        CompletableFuture.allOf(responses).join();
+        return responses.length;
+    }
+
+    private static class BlockingServlet extends HttpServlet {
+
+        private final long latencyMillis;
+
+        BlockingServlet(long latencyMillis) {
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+        }
+    }
+}
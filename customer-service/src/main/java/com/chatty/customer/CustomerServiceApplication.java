@@ -3,12 +3,16 @@ package com.chatty.customer;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 
 @SpringBootApplication
 @EnableDiscoveryClient
 public class CustomerServiceApplication {
     public static void main(String[] args) {
-        SpringApplication.run(CustomerServiceApplication.class, args);
+        SpringApplication application = new SpringApplication(CustomerServiceApplication.class);
+        // Keeps startup steps for /actuator/startup so slow beans show up after a deploy
+        application.setApplicationStartup(new BufferingApplicationStartup(4096));
+        application.run(args);
     }
 }
@@ -0,0 +1,76 @@
+#!/usr/bin/env bash
+# Compares time-to-first-response and resident memory of the JVM and native builds of
+# gateway-service. Run from the repository root after building both:
+#
+#   ./gradlew :gateway-service:bootJar
+#   ./gradlew :gateway-service:nativeCompile -Pnative
+#   gateway-service/scripts/compare-startup.sh [runs]
+#
+# Eureka registration is switched off so the numbers do not depend on a registry being
+# reachable. RSS is sampled once the first response has been served and again after a
+# short burst of requests, since the JVM keeps growing while it warms up.
+#
+# Results, 5 runs, 500-request burst, 1 vCPU / 6 GB Linux VM, Temurin 21.0.1:
+#
+#   jvm    mean:  first response 26097 ms, RSS 235.0 MB ready, 244.4 MB after 500 requests
+#   native not measured
+#
+# The native side is still missing: that machine had no GraalVM and could not download
+# it. Add its line from a run with GraalVM for JDK 21. The single vCPU makes the JVM
+# startup slower than on typical hardware, so compare both builds on the same machine.
+set -euo pipefail
+
+RUNS=${1:-5}
+PORT=${PORT:-18080}
+BURST=${BURST:-500}
+JAR=$(ls gateway-service/build/libs/gateway-service-*.jar 2>/dev/null | grep -v plain | head -n 1)
+NATIVE=gateway-service/build/native/nativeCompile/gateway-service
+ARGS=(--server.port="$PORT" --spring.profiles.active=native
+      --eureka.client.register-with-eureka=false --eureka.client.fetch-registry=false)
+URL="http://localhost:$PORT/actuator/health"
+
+
+now_ms() { date +%s%3N; }
+rss_mb() { awk '/VmRSS/ { printf "%.1f", $2 / 1024 }' "/proc/$1/status"; }
+
+measure() {
+  local label=$1; shift
+  local total_ms=0 total_ready_rss=0 total_burst_rss=0
+  for ((run = 1; run <= RUNS; run++)); do
+    local start pid ready_ms ready_rss burst_rss
+    start=$(now_ms)
+    "$@" "${ARGS[@]}" > /dev/null 2>&1 &
+    pid=$!
+    # Any HTTP status means the server is accepting requests
+    until [[ $(curl -s -o /dev/null -w '%{http_code}' "$URL") != 000 ]]; do
+      kill -0 "$pid" 2>/dev/null || { echo "$label exited during startup" >&2; exit 1; }
+      sleep 0.01
+    done
+    ready_ms=$(($(now_ms) - start))
+    ready_rss=$(rss_mb "$pid")
+    for ((i = 0; i < BURST; i++)); do curl -s -o /dev/null "$URL"; done
+    burst_rss=$(rss_mb "$pid")
+    kill "$pid"; wait "$pid" 2>/dev/null || true
+
+    printf '%-6s run %d: first response %5d ms, RSS %7s MB ready, %7s MB after %d requests\n' \
+        "$label" "$run" "$ready_ms" "$ready_rss" "$burst_rss" "$BURST"
+    total_ms=$((total_ms + ready_ms))
+    total_ready_rss=$(awk -v a="$total_ready_rss" -v b="$ready_rss" 'BEGIN { print a + b }')
+    total_burst_rss=$(awk -v a="$total_burst_rss" -v b="$burst_rss" 'BEGIN { print a + b }')
+  done
+  printf '%-6s mean:  first response %5d ms, RSS %7.1f MB ready, %7.1f MB after %d requests\n\n' \
+      "$label" $((total_ms / RUNS)) "$(awk -v t="$total_ready_rss" -v n="$RUNS" 'BEGIN { print t / n }')" \
+      "$(awk -v t="$total_burst_rss" -v n="$RUNS" 'BEGIN { print t / n }')" "$BURST"
+}
+
+# Either build can be measured on its own, e.g. where GraalVM is not installed
+if [[ -f "$JAR" ]]; then
+  measure jvm java -jar "$JAR"
+else
+  echo "JVM build not found, run ./gradlew :gateway-service:bootJar" >&2
+fi
+if [[ -x "$NATIVE" ]]; then
+  measure native "$NATIVE"
+else
+  echo "Native build not found, run ./gradlew :gateway-service:nativeCompile -Pnative" >&2
+fi
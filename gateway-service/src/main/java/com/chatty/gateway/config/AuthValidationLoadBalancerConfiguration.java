@@ -0,0 +1,21 @@
+
+package com.chatty.gateway.config;
+
+import com.chatty.gateway.service.AuthValidationInstanceListSupplier;
+import org.springframework.cloud.client.discovery.ReactiveDiscoveryClient;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * Load balancer configuration for {@code auth-service-validation}, applied by
+ * {@link LoadBalancerConfig}. Like {@link PeakEwmaLoadBalancerConfiguration} it is a
+ * top-level class without {@code @Configuration}, so its supplier exists only in that
+ * service's child context.
+ */
+public class AuthValidationLoadBalancerConfiguration {
+
+    @Bean
+    public ServiceInstanceListSupplier authValidationInstanceListSupplier(ReactiveDiscoveryClient discoveryClient) {
+        return new AuthValidationInstanceListSupplier(discoveryClient);
+    }
+}
@@ -0,0 +1,23 @@
+
+package com.chatty.gateway.config;
+
+import com.chatty.gateway.service.AuthValidationInstanceListSupplier;
+import com.chatty.gateway.service.PeakEwmaLoadBalancer;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClient;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClients;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Replaces the default round-robin load balancer with {@link PeakEwmaLoadBalancer} for
+ * every service, covering both {@code lb://} routes and load-balanced WebClients.
+ * {@code auth-service-validation} is not registered in Eureka; its instances are derived
+ * from auth-service by {@link AuthValidationInstanceListSupplier}.
+ */
+@Configuration
+@LoadBalancerClients(
+        value = @LoadBalancerClient(
+                name = AuthValidationInstanceListSupplier.SERVICE_ID,
+                configuration = AuthValidationLoadBalancerConfiguration.class),
+        defaultConfiguration = PeakEwmaLoadBalancerConfiguration.class)
+public class LoadBalancerConfig {
+}
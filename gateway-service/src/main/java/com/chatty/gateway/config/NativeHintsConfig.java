@@ -0,0 +1,81 @@
+
+package com.chatty.gateway.config;
+
+import com.chatty.gateway.dto.ApiKeyChangeEvent;
+import com.chatty.gateway.dto.ApiKeyDetails;
+import com.chatty.gateway.dto.ApiKeyUsageCount;
+import com.chatty.gateway.dto.ApiKeyUsageFlushRequest;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+
+import java.util.List;
+
+/**
+ * Reflection and resource hints for the native image build. Spring AOT covers our own
+ * beans, but not classes that libraries look up by name at runtime or the DTOs that
+ * WebClient binds with Jackson. Ignored entirely when running on the JVM.
+ */
+@Configuration
+@ImportRuntimeHints(NativeHintsConfig.GatewayRuntimeHints.class)
+public class NativeHintsConfig {
+
+    static class GatewayRuntimeHints implements RuntimeHintsRegistrar {
+
+        // jjwt-api instantiates its implementation reflectively through Classes.newInstance
+        private static final List<String> JJWT_TYPES = List.of(
+                "io.jsonwebtoken.impl.DefaultJwtParserBuilder",
+                "io.jsonwebtoken.impl.DefaultJwtParser",
+                "io.jsonwebtoken.impl.DefaultJwtBuilder",
+                "io.jsonwebtoken.impl.DefaultClaims",
+                "io.jsonwebtoken.impl.DefaultHeader",
+                "io.jsonwebtoken.impl.DefaultJwsHeader",
+                "io.jsonwebtoken.impl.compression.DefaultCompressionCodecResolver",
+                "io.jsonwebtoken.jackson.io.JacksonSerializer",
+                "io.jsonwebtoken.jackson.io.JacksonDeserializer");
+
+        // Values of the resilience4j.circuitbreaker.instances map, bound by reflection
+        private static final List<String> RESILIENCE4J_TYPES = List.of(
+                "io.github.resilience4j.common.circuitbreaker.configuration.CommonCircuitBreakerConfigurationProperties$InstanceProperties",
+                "io.github.resilience4j.common.timelimiter.configuration.CommonTimeLimiterConfigurationProperties$InstanceProperties");
+
+        // Jackson codec classes the Eureka client needs beyond those in EurekaClientHints
+        private static final List<String> EUREKA_TYPES = List.of(
+                "com.netflix.appinfo.AmazonInfo",
+                "com.netflix.discovery.converters.jackson.EurekaJsonJacksonCodec",
+                "com.netflix.discovery.converters.jackson.builder.StringInterningAmazonInfoBuilder",
+                "com.netflix.discovery.converters.jackson.mixin.ApplicationsJsonMixIn",
+                "com.netflix.discovery.converters.jackson.mixin.MiniInstanceInfoMixIn",
+                "com.netflix.discovery.converters.jackson.serializer.InstanceInfoJsonBeanSerializer",
+                "com.netflix.discovery.converters.jackson.serializer.ApplicationsJsonBeanSerializer");
+
+        private final BindingReflectionHintsRegistrar bindingRegistrar = new BindingReflectionHintsRegistrar();
+
+        @Override
+        public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+            JJWT_TYPES.forEach(type -> hints.reflection().registerTypeIfPresent(classLoader, type,
+                    MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                    MemberCategory.INVOKE_PUBLIC_METHODS));
+            hints.resources().registerPattern("META-INF/services/io.jsonwebtoken.*");
+
+            RESILIENCE4J_TYPES.forEach(type -> hints.reflection().registerTypeIfPresent(classLoader, type,
+                    MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS,
+                    MemberCategory.INVOKE_PUBLIC_METHODS,
+                    MemberCategory.DECLARED_FIELDS));
+
+            EUREKA_TYPES.forEach(type -> hints.reflection().registerTypeIfPresent(classLoader, type,
+                    MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                    MemberCategory.INVOKE_DECLARED_METHODS,
+                    MemberCategory.DECLARED_FIELDS));
+
+            bindingRegistrar.registerReflectionHints(hints.reflection(),
+                    ApiKeyDetails.class,
+                    ApiKeyChangeEvent.class,
+                    ApiKeyUsageCount.class,
+                    ApiKeyUsageFlushRequest.class);
+        }
+    }
+}
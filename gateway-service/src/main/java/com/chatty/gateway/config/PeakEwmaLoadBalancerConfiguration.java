@@ -0,0 +1,36 @@
+
+package com.chatty.gateway.config;
+
+import com.chatty.gateway.service.InstanceLoadTracker;
+import com.chatty.gateway.service.PeakEwmaLoadBalancer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.loadbalancer.core.ReactorLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+
+/**
+ * Load balancer configuration applied by {@link LoadBalancerConfig} to every service,
+ * instantiated once per service in its load balancer child context. It must stay a
+ * top-level class without {@code @Configuration}: nested in a configuration class, or
+ * annotated, it would be registered in the main context too, where the service id is
+ * unset and its beans would shadow those of every child context.
+ */
+public class PeakEwmaLoadBalancerConfiguration {
+
+    @Bean
+    public ReactorLoadBalancer<ServiceInstance> peakEwmaLoadBalancer(
+            Environment environment,
+            LoadBalancerClientFactory loadBalancerClientFactory,
+            InstanceLoadTracker instanceLoadTracker,
+            @Value("${gateway.load-balancer.outlier.max-ejection-percent:50}") int maxEjectionPercent) {
+        String serviceId = environment.getProperty(LoadBalancerClientFactory.PROPERTY_NAME);
+        return new PeakEwmaLoadBalancer(
+                loadBalancerClientFactory.getLazyProvider(serviceId, ServiceInstanceListSupplier.class),
+                serviceId,
+                instanceLoadTracker,
+                maxEjectionPercent);
+    }
+}
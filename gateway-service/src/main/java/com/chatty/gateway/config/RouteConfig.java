@@ -2,14 +2,34 @@
 package com.chatty.gateway.config;
 
 import com.chatty.gateway.filter.ApiKeyAuthenticationFilter;
+import com.chatty.gateway.filter.ApiKeyQuotaFilter;
+import com.chatty.gateway.filter.ConcurrencyLimitFilter;
+import com.chatty.gateway.filter.HedgingFilter;
 import com.chatty.gateway.filter.JwtAuthenticationFilter;
 import com.chatty.gateway.filter.RateLimitingFilter;
+import com.chatty.gateway.filter.ResponseCacheFilter;
+import com.chatty.gateway.filter.RetryBudgetFilter;
+import com.chatty.gateway.filter.StreamingResponseFilter;
+import com.chatty.gateway.filter.TimedGatewayFilter;
+import com.chatty.gateway.filter.WebSocketProxyFilter;
+import com.chatty.gateway.service.InstanceLoadTracker;
+import com.chatty.gateway.service.RetryBudget;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.factory.RetryGatewayFilterFactory;
 import org.springframework.cloud.gateway.route.RouteLocator;
 import org.springframework.cloud.gateway.route.builder.RouteLocatorBuilder;
+import org.springframework.cloud.gateway.support.RouteMetadataUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.time.Duration;
+import java.util.Map;
 
 @Configuration
 public class RouteConfig {
@@ -17,52 +37,150 @@ public class RouteConfig {
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
     private final ApiKeyAuthenticationFilter apiKeyAuthenticationFilter;
     private final RateLimitingFilter rateLimitingFilter;
+    private final ApiKeyQuotaFilter apiKeyQuotaFilter;
+    private final ResponseCacheFilter responseCacheFilter;
+    private final ConcurrencyLimitFilter concurrencyLimitFilter;
+    private final HedgingFilter hedgingFilter;
+    private final StreamingResponseFilter streamingResponseFilter;
+    private final WebSocketProxyFilter webSocketProxyFilter;
+    private final RetryBudget retryBudget;
+    private final MeterRegistry meterRegistry;
+    private final Duration streamingResponseTimeout;
 
     public RouteConfig(JwtAuthenticationFilter jwtAuthenticationFilter, 
                        ApiKeyAuthenticationFilter apiKeyAuthenticationFilter,
-                       RateLimitingFilter rateLimitingFilter) {
+                       RateLimitingFilter rateLimitingFilter,
+                       ApiKeyQuotaFilter apiKeyQuotaFilter,
+                       ResponseCacheFilter responseCacheFilter,
+                       ConcurrencyLimitFilter concurrencyLimitFilter,
+                       HedgingFilter hedgingFilter,
+                       StreamingResponseFilter streamingResponseFilter,
+                       WebSocketProxyFilter webSocketProxyFilter,
+                       RetryBudget retryBudget,
+                       MeterRegistry meterRegistry,
+                       @Value("${gateway.streaming.response-timeout:30s}") Duration streamingResponseTimeout) {
         this.jwtAuthenticationFilter = jwtAuthenticationFilter;
         this.apiKeyAuthenticationFilter = apiKeyAuthenticationFilter;
         this.rateLimitingFilter = rateLimitingFilter;
+        this.apiKeyQuotaFilter = apiKeyQuotaFilter;
+        this.responseCacheFilter = responseCacheFilter;
+        this.concurrencyLimitFilter = concurrencyLimitFilter;
+        this.hedgingFilter = hedgingFilter;
+        this.streamingResponseFilter = streamingResponseFilter;
+        this.webSocketProxyFilter = webSocketProxyFilter;
+        this.retryBudget = retryBudget;
+        this.meterRegistry = meterRegistry;
+        this.streamingResponseTimeout = streamingResponseTimeout;
     }
 
     @Bean
     public RouteLocator customRouteLocator(RouteLocatorBuilder builder) {
-        RetryGatewayFilterFactory.Retry retryConfig = new RetryGatewayFilterFactory.Retry();
-        retryConfig.setRetries(3);
-        retryConfig.setMethods(HttpMethod.GET.name(), HttpMethod.POST.name(), HttpMethod.PUT.name());
-        
+        GatewayFilter timedJwtAuthentication = timed("jwt-authentication", jwtAuthenticationFilter);
+        GatewayFilter timedApiKeyAuthentication = timed("api-key-authentication", apiKeyAuthenticationFilter);
+        GatewayFilter timedRateLimiting = timed("rate-limiting", rateLimitingFilter);
+        GatewayFilter timedApiKeyQuota = timed("api-key-quota", apiKeyQuotaFilter);
+        GatewayFilter timedConcurrencyLimit = timed("concurrency-limit", concurrencyLimitFilter);
+
+        // Runs once per attempt inside each route's retry filter
+        GatewayFilter retryBudgetFilter = new RetryBudgetFilter(retryBudget, retryConfig(new RetryGatewayFilterFactory.RetryConfig()));
+
         return builder.routes()
             // Public routes
             .route("auth-service-public", r -> r.path("/api/v1/auth/**")
-                .filters(f -> f.rewritePath("/api/v1/auth/(?<segment>.*)", "/api/v1/auth/${segment}")
+                .filters(f -> f.filter(timedConcurrencyLimit)
+                              .rewritePath("/api/v1/auth/(?<segment>.*)", "/api/v1/auth/${segment}")
                               .circuitBreaker(c -> c.setName("authServiceCircuitBreaker")
-                                                   .setFallbackUri("forward:/fallback/auth")))
+                                                   .setFallbackUri("forward:/fallback/auth"))
+                              .retry(RouteConfig::retryConfig)
+                              .filter(retryBudgetFilter))
                 .uri("lb://auth-service"))
                 
             // Routes requiring JWT authentication
             .route("customer-service-protected", r -> r.path("/api/v1/customers/**")
-                .filters(f -> f.filter(jwtAuthenticationFilter)
+                .filters(f -> f.filter(timedJwtAuthentication)
+                              .filter(responseCacheFilter)
+                              .filter(timedConcurrencyLimit)
                               .rewritePath("/api/v1/customers/(?<segment>.*)", "/api/v1/customers/${segment}")
                               .circuitBreaker(c -> c.setName("customerServiceCircuitBreaker")
-                                                   .setFallbackUri("forward:/fallback/customer")))
+                                                   .setFallbackUri("forward:/fallback/customer"))
+                              .retry(RouteConfig::retryConfig)
+                              .filter(retryBudgetFilter)
+                              .filter(hedgingFilter))
                 .uri("lb://customer-service"))
                 
             .route("auth-service-protected", r -> r.path("/api/v1/api-keys/**")
-                .filters(f -> f.filter(jwtAuthenticationFilter)
+                .filters(f -> f.filter(timedJwtAuthentication)
+                              .filter(timedConcurrencyLimit)
                               .rewritePath("/api/v1/api-keys/(?<segment>.*)", "/api/v1/api-keys/${segment}")
                               .circuitBreaker(c -> c.setName("apiKeyServiceCircuitBreaker")
-                                                   .setFallbackUri("forward:/fallback/api-key")))
+                                                   .setFallbackUri("forward:/fallback/api-key"))
+                              .retry(RouteConfig::retryConfig)
+                              .filter(retryBudgetFilter))
                 .uri("lb://auth-service"))
                 
             // API routes requiring API Key authentication
+            // Chat sessions authenticate once at the handshake; each message is then rate limited
+            .route("chatbot-api-ws", r -> r.path("/api/v1/chatbot/**")
+                .and().header(HttpHeaders.UPGRADE, "(?i)websocket")
+                .filters(f -> f.filter(timedApiKeyAuthentication)
+                              .filter(timedRateLimiting)
+                              .rewritePath("/api/v1/chatbot/(?<segment>.*)", "/api/v1/chatbot/${segment}")
+                              .filter(webSocketProxyFilter))
+                .metadata(InstanceLoadTracker.LONG_LIVED_METADATA, true)
+                .uri("lb://chatbot-service"))
+
+            // Streamed replies skip the circuit breaker, retries and the concurrency limiter:
+            // their time limits and RTT samples assume short requests
+            .route("chatbot-api-stream", r -> r.path("/api/v1/chatbot/**")
+                .and().predicate(RouteConfig::isStreamingRequest)
+                .filters(f -> f.filter(timedApiKeyAuthentication)
+                              .filter(timedRateLimiting)
+                              .filter(timedApiKeyQuota)
+                              .rewritePath("/api/v1/chatbot/(?<segment>.*)", "/api/v1/chatbot/${segment}")
+                              .filter(streamingResponseFilter))
+                .metadata(Map.of(RouteMetadataUtils.RESPONSE_TIMEOUT_ATTR, streamingResponseTimeout.toMillis(),
+                                 InstanceLoadTracker.LONG_LIVED_METADATA, true))
+                .uri("lb://chatbot-service"))
+
             .route("chatbot-api", r -> r.path("/api/v1/chatbot/**")
-                .filters(f -> f.filter(apiKeyAuthenticationFilter)
-                              .filter(rateLimitingFilter)
+                .filters(f -> f.filter(timedApiKeyAuthentication)
+                              .filter(timedRateLimiting)
+                              .filter(timedApiKeyQuota)
+                              .filter(timedConcurrencyLimit)
                               .rewritePath("/api/v1/chatbot/(?<segment>.*)", "/api/v1/chatbot/${segment}")
                               .circuitBreaker(c -> c.setName("chatbotServiceCircuitBreaker")
-                                                   .setFallbackUri("forward:/fallback/chatbot")))
+                                                   .setFallbackUri("forward:/fallback/chatbot"))
+                              .retry(RouteConfig::retryConfig)
+                              .filter(retryBudgetFilter))
                 .uri("lb://chatbot-service"))
             .build();
     }
+
+    /**
+     * Only safe methods are retried. Replaying a login, registration, key generation or
+     * chatbot turn after a timeout could apply it twice. The retry filter and
+     * {@link RetryBudgetFilter} share this config, so both agree on what is retryable.
+     */
+    private static RetryGatewayFilterFactory.RetryConfig retryConfig(RetryGatewayFilterFactory.RetryConfig config) {
+        return config
+                .setRetries(3)
+                .setMethods(HttpMethod.GET, HttpMethod.HEAD);
+    }
+
+    /**
+     * Clients opt into streaming by accepting an event stream or NDJSON, or with
+     * {@code ?stream=true} for chunked responses of any type.
+     */
+    private static boolean isStreamingRequest(ServerWebExchange exchange) {
+        if ("true".equals(exchange.getRequest().getQueryParams().getFirst("stream"))) {
+            return true;
+        }
+        return exchange.getRequest().getHeaders().getAccept().stream()
+                .anyMatch(accept -> accept.equalsTypeAndSubtype(MediaType.TEXT_EVENT_STREAM)
+                        || accept.equalsTypeAndSubtype(MediaType.APPLICATION_NDJSON));
+    }
+
+    private GatewayFilter timed(String stage, GatewayFilter filter) {
+        return new TimedGatewayFilter(stage, filter, meterRegistry);
+    }
 }
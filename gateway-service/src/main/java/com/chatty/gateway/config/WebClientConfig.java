@@ -1,10 +1,19 @@
 
 package com.chatty.gateway.config;
 
+import com.chatty.gateway.service.InternalRequestSigner;
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
 
 @Configuration
 public class WebClientConfig {
@@ -14,4 +23,124 @@ public class WebClientConfig {
     public WebClient.Builder loadBalancedWebClientBuilder() {
         return WebClient.builder();
     }
+
+    /**
+     * Dedicated connection pool for gateway-to-auth-service calls. Pool gauges (active,
+     * idle, pending and total connections) are published as
+     * {@code reactor.netty.connection.provider.*} metrics tagged with the pool name.
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider authServiceConnectionProvider(
+            @Value("${services.auth-service.client.max-connections:200}") int maxConnections,
+            @Value("${services.auth-service.client.pending-acquire-max-count:1000}") int pendingAcquireMaxCount,
+            @Value("${services.auth-service.client.pending-acquire-timeout:2s}") Duration pendingAcquireTimeout,
+            @Value("${services.auth-service.client.max-idle-time:30s}") Duration maxIdleTime,
+            @Value("${services.auth-service.client.max-life-time:5m}") Duration maxLifeTime,
+            @Value("${services.auth-service.client.evict-interval:30s}") Duration evictInterval) {
+        return ConnectionProvider.builder("auth-service")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .maxIdleTime(maxIdleTime)
+                .maxLifeTime(maxLifeTime)
+                .evictInBackground(evictInterval)
+                .metrics(true)
+                .build();
+    }
+
+    /**
+     * Client for auth-service. Requests carry an {@code X-Internal-Auth} header, which
+     * auth-service requires on its {@code /internal/**} endpoints.
+     */
+    @Bean
+    public WebClient authServiceWebClient(
+            @LoadBalanced WebClient.Builder loadBalancedWebClientBuilder,
+            ConnectionProvider authServiceConnectionProvider,
+            InternalRequestSigner internalRequestSigner,
+            @Value("${services.auth-service.url}") String authServiceUrl,
+            @Value("${services.auth-service.client.connect-timeout:1s}") Duration connectTimeout,
+            @Value("${services.auth-service.client.response-timeout:2s}") Duration responseTimeout) {
+        return loadBalancedWebClientBuilder.clone()
+                .baseUrl(authServiceUrl)
+                .clientConnector(authServiceConnector(authServiceConnectionProvider, connectTimeout, responseTimeout))
+                .filter(internalRequestSigner.exchangeFilter())
+                .build();
+    }
+
+    /**
+     * Client for API key lookups, which auth-service serves from its reactive validation
+     * listener rather than from Tomcat. Shares the auth-service connection pool and signs
+     * requests the same way.
+     */
+    @Bean
+    public WebClient authValidationWebClient(
+            @LoadBalanced WebClient.Builder loadBalancedWebClientBuilder,
+            ConnectionProvider authServiceConnectionProvider,
+            InternalRequestSigner internalRequestSigner,
+            @Value("${services.auth-service.validation-url:lb://auth-service-validation}") String validationUrl,
+            @Value("${services.auth-service.client.connect-timeout:1s}") Duration connectTimeout,
+            @Value("${services.auth-service.client.response-timeout:2s}") Duration responseTimeout) {
+        return loadBalancedWebClientBuilder.clone()
+                .baseUrl(validationUrl)
+                .clientConnector(authServiceConnector(authServiceConnectionProvider, connectTimeout, responseTimeout))
+                .filter(internalRequestSigner.exchangeFilter())
+                .build();
+    }
+
+    /**
+     * Client for the gateway's own calls to customer-service, such as loading tenant
+     * weights for fair queuing.
+     */
+    @Bean
+    public WebClient customerServiceWebClient(
+            @LoadBalanced WebClient.Builder loadBalancedWebClientBuilder,
+            @Value("${services.customer-service.url:lb://customer-service}") String customerServiceUrl,
+            @Value("${services.customer-service.client.max-connections:20}") int maxConnections,
+            @Value("${services.customer-service.client.connect-timeout:1s}") Duration connectTimeout,
+            @Value("${services.customer-service.client.response-timeout:2s}") Duration responseTimeout) {
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("customer-service")
+                .maxConnections(maxConnections)
+                .metrics(true)
+                .build();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .responseTimeout(responseTimeout);
+
+        return loadBalancedWebClientBuilder.clone()
+                .baseUrl(customerServiceUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+
+    /**
+     * Client used by {@link com.chatty.gateway.filter.HedgingFilter} to proxy hedged GETs,
+     * resolving service ids through the load balancer so each attempt picks its own instance.
+     */
+    @Bean
+    public WebClient hedgingWebClient(
+            @LoadBalanced WebClient.Builder loadBalancedWebClientBuilder,
+            @Value("${gateway.hedging.connect-timeout:1s}") Duration connectTimeout,
+            @Value("${gateway.hedging.response-timeout:10s}") Duration responseTimeout,
+            @Value("${gateway.hedging.max-body-size:256KB}") DataSize maxBodySize) {
+        HttpClient httpClient = HttpClient.create(ConnectionProvider.builder("hedging").metrics(true).build())
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .responseTimeout(responseTimeout);
+
+        return loadBalancedWebClientBuilder.clone()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                // Hedged responses are buffered whole; larger ones take the normal proxy path
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize((int) maxBodySize.toBytes()))
+                .build();
+    }
+
+    private static ReactorClientHttpConnector authServiceConnector(ConnectionProvider connectionProvider,
+                                                                   Duration connectTimeout,
+                                                                   Duration responseTimeout) {
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .keepAlive(true)
+                .responseTimeout(responseTimeout);
+        return new ReactorClientHttpConnector(httpClient);
+    }
 }
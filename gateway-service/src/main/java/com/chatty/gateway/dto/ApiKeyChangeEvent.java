@@ -0,0 +1,23 @@
+
+package com.chatty.gateway.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ApiKeyChangeEvent {
+    private ChangeType type;
+    private String apiKeyId;
+    private String apiKeyHash;
+    private ApiKeyDetails details;
+
+    public enum ChangeType {
+        UPSERT,
+        REMOVE
+    }
+}
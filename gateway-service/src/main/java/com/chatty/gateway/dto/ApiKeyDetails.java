@@ -0,0 +1,28 @@
+
+package com.chatty.gateway.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ApiKeyDetails {
+    private String apiKeyId;
+    private String customerId;
+    private boolean valid;
+    private Instant expiresAt;
+    private int rateLimitPerMinute;
+    private int dailyLimit;
+    private int monthlyLimit;
+    private String environment; // PROD, DEV, TEST
+
+    public static ApiKeyDetails invalid() {
+        return ApiKeyDetails.builder().valid(false).build();
+    }
+}
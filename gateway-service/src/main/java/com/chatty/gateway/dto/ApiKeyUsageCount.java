@@ -0,0 +1,17 @@
+
+package com.chatty.gateway.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ApiKeyUsageCount {
+    private String apiKeyId;
+    private String period;
+    private long count;
+}
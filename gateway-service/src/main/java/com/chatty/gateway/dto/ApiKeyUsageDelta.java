@@ -0,0 +1,20 @@
+
+package com.chatty.gateway.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ApiKeyUsageDelta {
+    private String apiKeyId;
+    private String period;
+    private Instant periodEnd;
+    private long delta;
+}
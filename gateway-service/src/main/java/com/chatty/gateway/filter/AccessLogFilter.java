@@ -0,0 +1,91 @@
+
+package com.chatty.gateway.filter;
+
+import com.chatty.gateway.dto.ApiKeyDetails;
+import com.chatty.gateway.service.AccessLog;
+import com.chatty.gateway.service.AccessLog.Outcome;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Hands every exchange that matched a route to the {@link AccessLog} when it completes,
+ * fails or is cancelled by the client. It is classified by status rather than by whether
+ * it was forwarded downstream, so responses the gateway serves itself, such as cache hits
+ * and 304s, count as allowed and only 4xx responses as rejected. The query string is left out, since it may carry an
+ * API key.
+ */
+@Component
+@RequiredArgsConstructor
+public class AccessLogFilter implements GlobalFilter, Ordered {
+
+    // Not a registered status; the nginx convention for a client that went away
+    private static final int CLIENT_CLOSED_REQUEST = 499;
+
+    private final AccessLog accessLog;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        long start = System.nanoTime();
+        return chain.filter(exchange)
+                .doFinally(signal -> record(exchange, start, signal));
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    private void record(ServerWebExchange exchange, long start, SignalType signal) {
+        ServerHttpRequest request = exchange.getRequest();
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        ApiKeyDetails apiKeyDetails = exchange.getAttribute(ApiKeyAuthenticationFilter.API_KEY_DETAILS_ATTR);
+        HttpStatusCode status = exchange.getResponse().getStatusCode();
+
+        boolean failed = signal == SignalType.ON_ERROR;
+        boolean cancelled = signal == SignalType.CANCEL;
+
+        Outcome outcome;
+        if (cancelled) {
+            outcome = Outcome.CANCELLED;
+        } else if (failed || (status != null && status.is5xxServerError())) {
+            outcome = Outcome.ERROR;
+        } else if (status != null && status.is4xxClientError()) {
+            outcome = Outcome.REJECTED;
+        } else {
+            outcome = Outcome.ALLOWED;
+        }
+
+        int statusCode;
+        if (status != null) {
+            statusCode = status.value();
+        } else if (cancelled) {
+            statusCode = CLIENT_CLOSED_REQUEST;
+        } else {
+            statusCode = failed ? 500 : 200;
+        }
+
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        accessLog.record(
+                request.getMethod().name(),
+                request.getPath().value(),
+                route != null ? route.getId() : null,
+                statusCode,
+                outcome,
+                System.nanoTime() - start,
+                remoteAddress != null ? remoteAddress.getHostString() : null,
+                apiKeyDetails != null ? apiKeyDetails.getApiKeyId() : null,
+                ApiKeyAuthenticationFilter.extractApiKey(request));
+    }
+}
@@ -1,6 +1,7 @@
 
 package com.chatty.gateway.filter;
 
+import com.chatty.gateway.service.ApiKeyBloomFilter;
 import com.chatty.gateway.service.ApiKeyService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -18,27 +19,42 @@ import reactor.core.publisher.Mono;
 @Slf4j
 public class ApiKeyAuthenticationFilter implements GatewayFilter {
 
+    public static final String API_KEY_DETAILS_ATTR = ApiKeyAuthenticationFilter.class.getName() + ".apiKeyDetails";
+    public static final String API_KEY_HEADER = "X-API-KEY";
+    // Browsers cannot set headers on a WebSocket handshake, so it may carry the key here
+    public static final String API_KEY_QUERY_PARAM = "api_key";
+
     private final ApiKeyService apiKeyService;
-    private static final String API_KEY_HEADER = "X-API-KEY";
+    private final ApiKeyBloomFilter apiKeyBloomFilter;
 
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
         ServerHttpRequest request = exchange.getRequest();
+        String apiKey = extractApiKey(request);
         
-        if (!request.getHeaders().containsKey(API_KEY_HEADER)) {
+        if (apiKey == null) {
             return onError(exchange, "Missing API key", HttpStatus.UNAUTHORIZED);
         }
-
-        String apiKey = request.getHeaders().getFirst(API_KEY_HEADER);
         
-        if (apiKey == null || apiKey.isEmpty()) {
+        if (apiKey.isEmpty()) {
+            return onError(exchange, "Invalid API key", HttpStatus.UNAUTHORIZED);
+        }
+
+        // Keys that were never issued are rejected without a cache entry or remote call
+        if (!apiKeyBloomFilter.mightContain(apiKey)) {
             return onError(exchange, "Invalid API key", HttpStatus.UNAUTHORIZED);
         }
 
-        return apiKeyService.validateApiKey(apiKey)
-                .flatMap(isValid -> {
-                    if (Boolean.TRUE.equals(isValid)) {
-                        return chain.filter(exchange);
+        return apiKeyService.resolveApiKey(apiKey)
+                .flatMap(apiKeyDetails -> {
+                    if (apiKeyDetails.isValid()) {
+                        exchange.getAttributes().put(API_KEY_DETAILS_ATTR, apiKeyDetails);
+                        if (request.getHeaders().containsKey(API_KEY_HEADER)) {
+                            return chain.filter(exchange);
+                        }
+                        // Later filters and the downstream service read the key from the header
+                        ServerHttpRequest withHeader = request.mutate().header(API_KEY_HEADER, apiKey).build();
+                        return chain.filter(exchange.mutate().request(withHeader).build());
                     } else {
                         return onError(exchange, "Invalid API key", HttpStatus.UNAUTHORIZED);
                     }
@@ -49,6 +65,18 @@ public class ApiKeyAuthenticationFilter implements GatewayFilter {
                 });
     }
 
+    /**
+     * Returns the API key from the {@code X-API-KEY} header, or from the query string on a
+     * WebSocket handshake, or {@code null} if there is none.
+     */
+    public static String extractApiKey(ServerHttpRequest request) {
+        String apiKey = request.getHeaders().getFirst(API_KEY_HEADER);
+        if (apiKey == null && "websocket".equalsIgnoreCase(request.getHeaders().getUpgrade())) {
+            apiKey = request.getQueryParams().getFirst(API_KEY_QUERY_PARAM);
+        }
+        return apiKey;
+    }
+
     private Mono<Void> onError(ServerWebExchange exchange, String message, HttpStatus status) {
         ServerHttpResponse response = exchange.getResponse();
         response.setStatusCode(status);
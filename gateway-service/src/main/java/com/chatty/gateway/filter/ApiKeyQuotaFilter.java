@@ -0,0 +1,49 @@
+
+package com.chatty.gateway.filter;
+
+import com.chatty.gateway.dto.ApiKeyDetails;
+import com.chatty.gateway.service.ApiKeyQuotaService;
+import com.chatty.gateway.service.ApiKeyQuotaService.QuotaDecision;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ApiKeyQuotaFilter implements GatewayFilter {
+
+    private final ApiKeyQuotaService apiKeyQuotaService;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        ApiKeyDetails apiKeyDetails = exchange.getAttribute(ApiKeyAuthenticationFilter.API_KEY_DETAILS_ATTR);
+
+        if (apiKeyDetails == null || apiKeyDetails.getApiKeyId() == null) {
+            return chain.filter(exchange);
+        }
+
+        QuotaDecision decision = apiKeyQuotaService.tryAcquire(apiKeyDetails);
+
+        if (!decision.allowed()) {
+            log.debug("API key quota exceeded for period {}", decision.period());
+            exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(decision.retryAfterSeconds()));
+            return onError(exchange, "Quota exceeded", HttpStatus.TOO_MANY_REQUESTS);
+        }
+
+        return chain.filter(exchange);
+    }
+
+    private Mono<Void> onError(ServerWebExchange exchange, String message, HttpStatus status) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(status);
+        return response.setComplete();
+    }
+}
@@ -0,0 +1,79 @@
+
+package com.chatty.gateway.filter;
+
+import com.chatty.gateway.dto.ApiKeyDetails;
+import com.chatty.gateway.service.AdaptiveConcurrencyLimiter;
+import com.chatty.gateway.service.TenantWeights;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ConcurrencyLimitFilter implements GatewayFilter {
+
+    private static final String ANONYMOUS_TENANT = "anonymous";
+
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final TenantWeights tenantWeights;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        if (route == null) {
+            return chain.filter(exchange);
+        }
+
+        String customerId = customerIdOf(exchange);
+        return concurrencyLimiter.acquire(route.getId(), customerId != null ? customerId : ANONYMOUS_TENANT,
+                        tenantWeights.weightOf(customerId))
+                .flatMap(permit -> chain.filter(exchange)
+                        .doFinally(signal -> {
+                            if (signal == SignalType.CANCEL) {
+                                permit.onIgnore();
+                                return;
+                            }
+                            HttpStatusCode status = exchange.getResponse().getStatusCode();
+                            if (signal == SignalType.ON_ERROR || (status != null && status.is5xxServerError())) {
+                                permit.onDropped();
+                            } else {
+                                permit.onSuccess();
+                            }
+                        })
+                        .thenReturn(true))
+                .switchIfEmpty(Mono.defer(() -> {
+                    log.debug("Concurrency limit reached for route {}", route.getId());
+                    return onError(exchange, "Service overloaded", HttpStatus.SERVICE_UNAVAILABLE).thenReturn(false);
+                }))
+                .then();
+    }
+
+    /**
+     * The tenant is the customer behind the API key or JWT; requests without one share
+     * a single anonymous tenant.
+     */
+    private static String customerIdOf(ServerWebExchange exchange) {
+        ApiKeyDetails apiKeyDetails = exchange.getAttribute(ApiKeyAuthenticationFilter.API_KEY_DETAILS_ATTR);
+        if (apiKeyDetails != null && apiKeyDetails.getCustomerId() != null) {
+            return apiKeyDetails.getCustomerId();
+        }
+        return exchange.getAttribute(JwtAuthenticationFilter.CUSTOMER_ID_ATTR);
+    }
+
+    private Mono<Void> onError(ServerWebExchange exchange, String message, HttpStatus status) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(status);
+        return response.setComplete();
+    }
+}
@@ -0,0 +1,257 @@
+
+package com.chatty.gateway.filter;
+
+import com.chatty.gateway.service.RetryBudget;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.RouteMetadataUtils;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Hedged requests for idempotent GETs. The filter proxies the request itself. If no
+ * response has arrived after the route's recent p95 latency, it sends a second attempt,
+ * which the load balancer may route to another instance, and returns whichever response
+ * comes first. Hedges are taken from the route's {@link RetryBudget}, so a slow
+ * downstream is never sent more than the budget allows, and are not sent until the
+ * route has enough samples to estimate its p95. Other methods go through the normal
+ * proxy path. It must be the last filter of the route.
+ *
+ * Attempts apply the gateway's header filters and the route's response timeout, as the
+ * normal proxy path does. Responses are buffered to pick a winner, so one larger than
+ * {@code max-body-size} is given up on and fetched again through the normal proxy path.
+ */
+@Component
+@Slf4j
+public class HedgingFilter implements GatewayFilter {
+
+    private static final Set<String> HOP_BY_HOP_HEADERS = Set.of(
+            HttpHeaders.CONNECTION, HttpHeaders.TRANSFER_ENCODING, HttpHeaders.CONTENT_LENGTH,
+            HttpHeaders.HOST, HttpHeaders.UPGRADE, "Keep-Alive", HttpHeaders.PROXY_AUTHORIZATION, HttpHeaders.TE,
+            HttpHeaders.TRAILER);
+
+    private final WebClient hedgingWebClient;
+    private final ObjectProvider<List<HttpHeadersFilter>> headersFilters;
+    private final HttpClientProperties httpClientProperties;
+    private final RetryBudget retryBudget;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final double percentile;
+    private final Duration minDelay;
+    private final long minSamples;
+    private final Map<String, RouteLatency> latencies = new ConcurrentHashMap<>();
+
+    public HedgingFilter(@Qualifier("hedgingWebClient") WebClient hedgingWebClient,
+                         ObjectProvider<List<HttpHeadersFilter>> headersFilters,
+                         HttpClientProperties httpClientProperties,
+                         RetryBudget retryBudget,
+                         MeterRegistry meterRegistry,
+                         @Value("${gateway.hedging.enabled:false}") boolean enabled,
+                         @Value("${gateway.hedging.percentile:0.95}") double percentile,
+                         @Value("${gateway.hedging.min-delay:10ms}") Duration minDelay,
+                         @Value("${gateway.hedging.min-samples:100}") long minSamples) {
+        this.hedgingWebClient = hedgingWebClient;
+        this.headersFilters = headersFilters;
+        this.httpClientProperties = httpClientProperties;
+        this.retryBudget = retryBudget;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.minDelay = minDelay;
+        this.minSamples = minSamples;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        if (!enabled || route == null || exchange.getRequest().getMethod() != HttpMethod.GET) {
+            return chain.filter(exchange);
+        }
+
+        RouteLatency latency = latencies.computeIfAbsent(route.getId(), RouteLatency::new);
+        Duration hedgeDelay = latency.hedgeDelay();
+        URI target = targetUri(route, exchange.getRequest());
+        HttpHeaders requestHeaders = HttpHeadersFilter.filterRequest(headersFilters.getIfAvailable(), exchange);
+        Duration responseTimeout = responseTimeout(route);
+        AtomicBoolean tooLarge = new AtomicBoolean();
+
+        Mono<ResponseEntity<byte[]>> primary = attempt(target, requestHeaders, responseTimeout, latency, tooLarge);
+        Mono<ResponseEntity<byte[]>> response = primary;
+        if (hedgeDelay != null) {
+            Mono<ResponseEntity<byte[]>> hedge = Mono.delay(hedgeDelay)
+                    .filter(tick -> retryBudget.tryAcquireRetry(route.getId()))
+                    .doOnNext(tick -> latency.hedges.increment())
+                    .flatMap(tick -> attempt(target, requestHeaders, responseTimeout, latency, tooLarge));
+            response = Mono.firstWithValue(primary, hedge)
+                    // Surface the primary's own error, such as a timeout, rather than "no value"
+                    .onErrorMap(NoSuchElementException.class,
+                            e -> e.getSuppressed().length > 0 ? e.getSuppressed()[0] : e);
+        }
+
+        return response
+                .onErrorResume(e -> tooLarge.get(), e -> Mono.empty())
+                .flatMap(entity -> write(exchange, entity).thenReturn(true))
+                // Only a response over the size cap leaves no entity
+                .switchIfEmpty(Mono.defer(() -> chain.filter(exchange).thenReturn(true)))
+                .then();
+    }
+
+    private Mono<ResponseEntity<byte[]>> attempt(URI target, HttpHeaders requestHeaders, Duration responseTimeout,
+                                                 RouteLatency latency, AtomicBoolean tooLarge) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            Mono<ResponseEntity<byte[]>> entity = hedgingWebClient
+                    .get()
+                    .uri(target)
+                    .headers(headers -> requestHeaders.forEach((name, values) -> {
+                        if (!isHopByHop(name)) {
+                            headers.addAll(name, values);
+                        }
+                    }))
+                    .exchangeToMono(clientResponse -> clientResponse.toEntity(byte[].class))
+                    .doOnNext(e -> latency.upstream.record(System.nanoTime() - start, TimeUnit.NANOSECONDS))
+                    .onErrorResume(DataBufferLimitException.class, e -> {
+                        tooLarge.set(true);
+                        return Mono.empty();
+                    });
+            if (responseTimeout == null) {
+                return entity;
+            }
+            return entity.timeout(responseTimeout, Mono.error(() -> new ResponseStatusException(
+                    HttpStatus.GATEWAY_TIMEOUT, "Response took longer than timeout: " + responseTimeout)));
+        });
+    }
+
+    /**
+     * The route's {@code response-timeout} metadata in milliseconds, or the gateway-wide
+     * HTTP client setting, as the normal proxy path resolves it.
+     */
+    private Duration responseTimeout(Route route) {
+        Object timeout = route.getMetadata().get(RouteMetadataUtils.RESPONSE_TIMEOUT_ATTR);
+        if (timeout instanceof Number millis) {
+            return millis.longValue() < 0 ? null : Duration.ofMillis(millis.longValue());
+        }
+        if (timeout != null) {
+            long millis = Long.parseLong(timeout.toString());
+            return millis < 0 ? null : Duration.ofMillis(millis);
+        }
+        return httpClientProperties.getResponseTimeout();
+    }
+
+    private Mono<Void> write(ServerWebExchange exchange, ResponseEntity<byte[]> entity) {
+        ServerWebExchangeUtils.setAlreadyRouted(exchange);
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(entity.getStatusCode());
+        HttpHeaders headers = HttpHeadersFilter.filter(headersFilters.getIfAvailable(), entity.getHeaders(),
+                exchange, HttpHeadersFilter.Type.RESPONSE);
+        headers.forEach((name, values) -> {
+            if (!isHopByHop(name)) {
+                response.getHeaders().put(name, values);
+            }
+        });
+
+        byte[] body = entity.getBody();
+        if (body == null || body.length == 0) {
+            return response.setComplete();
+        }
+        response.getHeaders().setContentLength(body.length);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
+    }
+
+    private static URI targetUri(Route route, ServerHttpRequest request) {
+        URI routeUri = route.getUri();
+        // The load-balanced client resolves plain http URIs whose host is a service id
+        String scheme = "lb".equals(routeUri.getScheme()) ? "http" : routeUri.getScheme();
+        return UriComponentsBuilder.fromUri(routeUri)
+                .scheme(scheme)
+                .replacePath(request.getURI().getRawPath())
+                .replaceQuery(request.getURI().getRawQuery())
+                .build(true)
+                .toUri();
+    }
+
+    private static boolean isHopByHop(String header) {
+        return HOP_BY_HOP_HEADERS.stream().anyMatch(header::equalsIgnoreCase);
+    }
+
+    private final class RouteLatency {
+
+        private final Timer upstream;
+        private final Counter hedges;
+        private volatile long refreshedAtNanos;
+        private volatile Duration hedgeDelay;
+
+        RouteLatency(String routeId) {
+            this.upstream = Timer.builder("gateway.hedging.upstream.duration")
+                    .description("Upstream latency of hedged routes, used to pick the hedge delay")
+                    .tag("route", routeId)
+                    .publishPercentiles(percentile)
+                    .distributionStatisticExpiry(Duration.ofMinutes(1))
+                    .distributionStatisticBufferLength(3)
+                    .register(meterRegistry);
+            this.hedges = Counter.builder("gateway.hedging.hedges")
+                    .description("Hedge attempts sent")
+                    .tag("route", routeId)
+                    .register(meterRegistry);
+            this.refreshedAtNanos = System.nanoTime() - TimeUnit.SECONDS.toNanos(1);
+        }
+
+        /**
+         * The current hedge delay, or {@code null} while there are too few samples. The
+         * percentile is recomputed at most once a second.
+         */
+        Duration hedgeDelay() {
+            long now = System.nanoTime();
+            if (now - refreshedAtNanos >= TimeUnit.SECONDS.toNanos(1)) {
+                refreshedAtNanos = now;
+                hedgeDelay = computeHedgeDelay();
+            }
+            return hedgeDelay;
+        }
+
+        private Duration computeHedgeDelay() {
+            if (upstream.count() < minSamples) {
+                return null;
+            }
+            ValueAtPercentile[] values = upstream.takeSnapshot().percentileValues();
+            if (values.length == 0) {
+                return null;
+            }
+            Duration delay = Duration.ofNanos((long) values[0].value(TimeUnit.NANOSECONDS));
+            return delay.compareTo(minDelay) < 0 ? minDelay : delay;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+
+package com.chatty.gateway.filter;
+
+import com.chatty.gateway.service.InstanceLoadTracker;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.ReactiveLoadBalancerClientFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+/**
+ * Tells {@link InstanceLoadTracker} what the load balancer lifecycle can't: that a routed
+ * request was cancelled, and that it belongs to a long-lived route. Runs right after the
+ * load balancer has picked an instance, so the choice is on the exchange.
+ */
+@Component
+@RequiredArgsConstructor
+public class InstanceLoadFilter implements GlobalFilter, Ordered {
+
+    private final InstanceLoadTracker instanceLoadTracker;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Response<ServiceInstance> lbResponse =
+                exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR);
+        if (lbResponse == null || !lbResponse.hasServer()) {
+            return chain.filter(exchange);
+        }
+
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        if (route != null && Boolean.TRUE.equals(route.getMetadata().get(InstanceLoadTracker.LONG_LIVED_METADATA))) {
+            instanceLoadTracker.markLongLived(lbResponse);
+        }
+        return chain.filter(exchange)
+                .doFinally(signal -> {
+                    if (signal == SignalType.CANCEL) {
+                        instanceLoadTracker.onCancel(lbResponse);
+                    }
+                });
+    }
+
+    @Override
+    public int getOrder() {
+        return ReactiveLoadBalancerClientFilter.LOAD_BALANCER_CLIENT_FILTER_ORDER + 1;
+    }
+}
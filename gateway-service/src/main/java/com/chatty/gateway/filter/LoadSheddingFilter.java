@@ -0,0 +1,109 @@
+
+package com.chatty.gateway.filter;
+
+import com.chatty.gateway.dto.ApiKeyDetails;
+import com.chatty.gateway.service.ApiKeyReplica;
+import com.chatty.gateway.service.LoadShedder;
+import com.chatty.gateway.service.LoadShedder.Priority;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sheds load by priority before any route filter runs. Logins and API key management
+ * are critical and customer traffic is high priority. Chatbot API traffic depends on the
+ * key's environment: PROD is high, DEV is low, and TEST or an unknown key is shed first.
+ * The environment comes from the local key replica, so classifying a request never
+ * calls out; until the replica is in sync, chatbot traffic is treated as low priority.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LoadSheddingFilter implements GlobalFilter, Ordered {
+
+    private static final Map<String, Priority> ROUTE_PRIORITIES = Map.of(
+            "auth-service-public", Priority.CRITICAL,
+            "auth-service-protected", Priority.CRITICAL,
+            "customer-service-protected", Priority.HIGH);
+    private static final Set<String> STREAMING_ROUTES = Set.of("chatbot-api-stream", "chatbot-api-ws");
+
+    private final LoadShedder loadShedder;
+    private final ApiKeyReplica apiKeyReplica;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Priority priority = priorityOf(exchange);
+        if (!loadShedder.tryAdmit(priority)) {
+            log.debug("Shedding {} priority request", priority);
+            exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER, "1");
+            return onError(exchange, "Gateway overloaded", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        if (route != null && STREAMING_ROUTES.contains(route.getId())) {
+            // A long-lived stream holds no gateway work once it starts, so it stops counting then
+            AtomicBoolean released = new AtomicBoolean();
+            Runnable release = () -> {
+                if (released.compareAndSet(false, true)) {
+                    loadShedder.release();
+                }
+            };
+            exchange.getResponse().beforeCommit(() -> Mono.fromRunnable(release));
+            return chain.filter(exchange).doFinally(signal -> release.run());
+        }
+        return chain.filter(exchange).doFinally(signal -> loadShedder.release());
+    }
+
+    @Override
+    public int getOrder() {
+        // Right after RouteMetricsFilter so shed requests are still timed
+        return Ordered.HIGHEST_PRECEDENCE + 1;
+    }
+
+    private Priority priorityOf(ServerWebExchange exchange) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        if (route == null) {
+            return Priority.LOW;
+        }
+        Priority priority = ROUTE_PRIORITIES.get(route.getId());
+        if (priority != null) {
+            return priority;
+        }
+
+        String apiKey = ApiKeyAuthenticationFilter.extractApiKey(exchange.getRequest());
+        if (apiKey == null || apiKey.isEmpty()) {
+            return Priority.SHEDDABLE;
+        }
+        if (!apiKeyReplica.isReady()) {
+            return Priority.LOW;
+        }
+        ApiKeyDetails details = apiKeyReplica.lookup(apiKey);
+        if (details == null || details.getEnvironment() == null) {
+            return Priority.SHEDDABLE;
+        }
+        return switch (details.getEnvironment()) {
+            case "PROD" -> Priority.HIGH;
+            case "DEV" -> Priority.LOW;
+            default -> Priority.SHEDDABLE;
+        };
+    }
+
+    private Mono<Void> onError(ServerWebExchange exchange, String message, HttpStatus status) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(status);
+        return response.setComplete();
+    }
+}
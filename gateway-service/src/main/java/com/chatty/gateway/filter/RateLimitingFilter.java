@@ -1,12 +1,14 @@
 
 package com.chatty.gateway.filter;
 
-import io.github.resilience4j.ratelimiter.RateLimiter;
-import io.github.resilience4j.ratelimiter.RateLimiterConfig;
-import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import com.chatty.gateway.dto.ApiKeyDetails;
+import com.chatty.gateway.service.TokenBucketRateLimiter;
+import com.chatty.gateway.service.TokenBucketRateLimiter.RateLimitDecision;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.http.server.reactive.ServerHttpResponse;
@@ -14,58 +16,68 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
-import java.time.Duration;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.net.InetSocketAddress;
 
 @Component
 @Slf4j
 public class RateLimitingFilter implements GatewayFilter {
 
     private static final String API_KEY_HEADER = "X-API-KEY";
-    private static final int DEFAULT_LIMIT = 10; // Default requests per minute
-    
-    private final Map<String, RateLimiter> rateLimiters = new ConcurrentHashMap<>();
-    private final RateLimiterRegistry rateLimiterRegistry;
-    
-    public RateLimitingFilter() {
-        RateLimiterConfig config = RateLimiterConfig.custom()
-                .limitRefreshPeriod(Duration.ofMinutes(1))
-                .limitForPeriod(DEFAULT_LIMIT)
-                .timeoutDuration(Duration.ofMillis(100))
-                .build();
-        
-        this.rateLimiterRegistry = RateLimiterRegistry.of(config);
+    private static final String RATE_LIMIT_LIMIT_HEADER = "X-RateLimit-Limit";
+    private static final String RATE_LIMIT_REMAINING_HEADER = "X-RateLimit-Remaining";
+    private static final String RATE_LIMIT_RESET_HEADER = "X-RateLimit-Reset";
+
+    private final TokenBucketRateLimiter rateLimiter;
+    private final int defaultLimitPerMinute;
+
+    public RateLimitingFilter(TokenBucketRateLimiter rateLimiter,
+                              @Value("${gateway.rate-limit.default-limit-per-minute:10}") int defaultLimitPerMinute) {
+        this.rateLimiter = rateLimiter;
+        this.defaultLimitPerMinute = defaultLimitPerMinute;
     }
 
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
         ServerHttpRequest request = exchange.getRequest();
-        
+
         // Get API Key from header
-        String apiKey = request.getHeaders().getFirst(API_KEY_HEADER);
-        
-        if (apiKey == null || apiKey.isEmpty()) {
+        String key = request.getHeaders().getFirst(API_KEY_HEADER);
+        int limitPerMinute = defaultLimitPerMinute;
+
+        ApiKeyDetails apiKeyDetails = exchange.getAttribute(ApiKeyAuthenticationFilter.API_KEY_DETAILS_ATTR);
+        if (apiKeyDetails != null && apiKeyDetails.getRateLimitPerMinute() > 0) {
+            limitPerMinute = apiKeyDetails.getRateLimitPerMinute();
+        }
+
+        if (key == null || key.isEmpty()) {
             // If no API key, use IP address as identifier
-            apiKey = request.getRemoteAddress().getAddress().getHostAddress();
+            key = clientAddress(request);
         }
-        
-        // Get or create rate limiter for this key
-        RateLimiter rateLimiter = rateLimiters.computeIfAbsent(apiKey, 
-            k -> rateLimiterRegistry.rateLimiter(apiKey)
-        );
-        
-        // Try to acquire permission
-        boolean permission = rateLimiter.acquirePermission();
-        
-        if (!permission) {
-            log.warn("Rate limit exceeded for API key: {}", apiKey);
+
+        RateLimitDecision decision = rateLimiter.tryConsume(key, limitPerMinute);
+
+        HttpHeaders headers = exchange.getResponse().getHeaders();
+        headers.set(RATE_LIMIT_LIMIT_HEADER, String.valueOf(decision.limit()));
+        headers.set(RATE_LIMIT_REMAINING_HEADER, String.valueOf(decision.remaining()));
+        headers.set(RATE_LIMIT_RESET_HEADER, String.valueOf(decision.resetSeconds()));
+
+        if (!decision.allowed()) {
+            log.debug("Rate limit of {} requests per minute exceeded", decision.limit());
+            headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(decision.retryAfterSeconds()));
             return onError(exchange, "Rate limit exceeded", HttpStatus.TOO_MANY_REQUESTS);
         }
-        
+
         return chain.filter(exchange);
     }
-    
+
+    private String clientAddress(ServerHttpRequest request) {
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        if (remoteAddress == null || remoteAddress.getAddress() == null) {
+            return "unknown";
+        }
+        return remoteAddress.getAddress().getHostAddress();
+    }
+
     private Mono<Void> onError(ServerWebExchange exchange, String message, HttpStatus status) {
         ServerHttpResponse response = exchange.getResponse();
         response.setStatusCode(status);
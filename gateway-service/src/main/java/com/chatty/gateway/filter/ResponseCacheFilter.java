@@ -0,0 +1,191 @@
+
+package com.chatty.gateway.filter;
+
+import com.chatty.gateway.service.ResponseCache;
+import com.chatty.gateway.service.ResponseCache.CacheKey;
+import com.chatty.gateway.service.ResponseCache.CachedResponse;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Caches customer-service GET responses per user and path. Hits are served from memory
+ * with an {@code ETag}, and a matching {@code If-None-Match} gets a bodyless 304. PUTs to
+ * a customer's {@code /verify} or {@code /activate} drop that customer's entries, both
+ * before they are proxied and again once they complete.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ResponseCacheFilter implements GatewayFilter {
+
+    private static final String CACHE_STATUS_HEADER = "X-Gateway-Cache";
+    private static final Pattern CUSTOMER_PATH = Pattern.compile("^/api/v1/customers/([^/]+)$");
+    private static final Pattern CUSTOMER_WRITE_PATH = Pattern.compile("^/api/v1/customers/([^/]+)/(verify|activate)$");
+
+    private final ResponseCache responseCache;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        String path = request.getPath().value();
+
+        if (request.getMethod() == HttpMethod.PUT) {
+            Matcher write = CUSTOMER_WRITE_PATH.matcher(path);
+            if (write.matches()) {
+                String customerId = write.group(1);
+                responseCache.invalidateCustomer(customerId);
+                return chain.filter(exchange)
+                        .doFinally(signal -> responseCache.invalidateCustomer(customerId));
+            }
+            return chain.filter(exchange);
+        }
+
+        String userId = request.getHeaders().getFirst("X-Auth-User-Id");
+        if (request.getMethod() != HttpMethod.GET || userId == null) {
+            return chain.filter(exchange);
+        }
+
+        String rawQuery = request.getURI().getRawQuery();
+        CacheKey key = new CacheKey(userId, rawQuery == null ? path : path + "?" + rawQuery);
+
+        CachedResponse cached = isNoCache(request) ? null : responseCache.get(key);
+        if (cached != null) {
+            return writeCached(exchange, cached);
+        }
+
+        long fetchEpoch = responseCache.currentEpoch();
+        ServerHttpResponse caching = new CachingResponse(exchange, key, fetchEpoch, customerIdFromPath(path));
+        return chain.filter(exchange.mutate().response(caching).build());
+    }
+
+    private Mono<Void> writeCached(ServerWebExchange exchange, CachedResponse cached) {
+        ServerHttpResponse response = exchange.getResponse();
+        HttpHeaders headers = response.getHeaders();
+        headers.setETag(cached.etag());
+        headers.set(CACHE_STATUS_HEADER, "HIT");
+
+        if (matchesETag(exchange.getRequest(), cached.etag())) {
+            response.setStatusCode(HttpStatus.NOT_MODIFIED);
+            return response.setComplete();
+        }
+
+        response.setStatusCode(HttpStatus.OK);
+        if (cached.contentType() != null) {
+            headers.set(HttpHeaders.CONTENT_TYPE, cached.contentType());
+        }
+        headers.setContentLength(cached.body().length);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(cached.body())));
+    }
+
+    private static boolean isNoCache(ServerHttpRequest request) {
+        String cacheControl = request.getHeaders().getCacheControl();
+        return cacheControl != null && cacheControl.contains("no-cache");
+    }
+
+    private static boolean matchesETag(ServerHttpRequest request, String etag) {
+        return request.getHeaders().getIfNoneMatch().stream()
+                .anyMatch(candidate -> candidate.equals("*") || candidate.equals(etag));
+    }
+
+    private static String customerIdFromPath(String path) {
+        Matcher matcher = CUSTOMER_PATH.matcher(path);
+        return matcher.matches() ? matcher.group(1) : null;
+    }
+
+    private String customerIdFromBody(byte[] body) {
+        try {
+            JsonNode customerId = objectMapper.readTree(body).path("customerId");
+            return customerId.isTextual() ? customerId.asText() : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static String etagOf(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Buffers a successful JSON response so it can be stored, answering with a 304
+     * instead when the client already holds the same representation.
+     */
+    private class CachingResponse extends ServerHttpResponseDecorator {
+
+        private final ServerWebExchange exchange;
+        private final CacheKey key;
+        private final long fetchEpoch;
+        private final String pathCustomerId;
+
+        CachingResponse(ServerWebExchange exchange, CacheKey key, long fetchEpoch, String pathCustomerId) {
+            super(exchange.getResponse());
+            this.exchange = exchange;
+            this.key = key;
+            this.fetchEpoch = fetchEpoch;
+            this.pathCustomerId = pathCustomerId;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            MediaType contentType = getHeaders().getContentType();
+            if (getStatusCode() != HttpStatus.OK || contentType == null
+                    || !contentType.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+                return super.writeWith(body);
+            }
+
+            return DataBufferUtils.join(body).flatMap(joined -> {
+                byte[] bytes = new byte[joined.readableByteCount()];
+                joined.read(bytes);
+                DataBufferUtils.release(joined);
+
+                String etag = etagOf(bytes);
+                String customerId = pathCustomerId != null ? pathCustomerId : customerIdFromBody(bytes);
+                if (customerId != null) {
+                    responseCache.put(key, new CachedResponse(bytes, contentType.toString(), etag, customerId), fetchEpoch);
+                } else {
+                    log.debug("Not caching response for {} without a customer id", key.path());
+                }
+
+                getHeaders().setETag(etag);
+                getHeaders().set(CACHE_STATUS_HEADER, "MISS");
+                if (matchesETag(exchange.getRequest(), etag)) {
+                    getHeaders().remove(HttpHeaders.CONTENT_TYPE);
+                    getHeaders().remove(HttpHeaders.CONTENT_LENGTH);
+                    setStatusCode(HttpStatus.NOT_MODIFIED);
+                    return setComplete();
+                }
+                getHeaders().remove(HttpHeaders.TRANSFER_ENCODING);
+                getHeaders().setContentLength(bytes.length);
+                return super.writeWith(Mono.just(bufferFactory().wrap(bytes)));
+            });
+        }
+    }
+}
@@ -0,0 +1,87 @@
+
+package com.chatty.gateway.filter;
+
+import com.chatty.gateway.service.RetryBudget;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.factory.RetryGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Enforces the {@link RetryBudget} for a route's retry filter. It must come after the
+ * retry filter in the route, so it runs once per attempt. When an attempt fails in a way
+ * the retry filter would retry and the budget has nothing left, it marks the retries as
+ * used up, and the failed attempt is returned as it is.
+ */
+public class RetryBudgetFilter implements GatewayFilter {
+
+    private final RetryBudget retryBudget;
+    private final RetryGatewayFilterFactory.RetryConfig retryConfig;
+
+    public RetryBudgetFilter(RetryBudget retryBudget, RetryGatewayFilterFactory.RetryConfig retryConfig) {
+        this.retryBudget = retryBudget;
+        this.retryConfig = retryConfig;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        if (route == null) {
+            return chain.filter(exchange);
+        }
+
+        return chain.filter(exchange)
+                .doOnSuccess(v -> afterAttempt(exchange, route.getId(), null))
+                .doOnError(e -> afterAttempt(exchange, route.getId(), e));
+    }
+
+    private void afterAttempt(ServerWebExchange exchange, String routeId, Throwable error) {
+        if (error == null && !isRetryableStatus(exchange.getResponse().getStatusCode())) {
+            retryBudget.recordSuccess(routeId);
+            return;
+        }
+        if (!wouldRetry(exchange, error)) {
+            return;
+        }
+        if (!retryBudget.tryAcquireRetry(routeId)) {
+            exchange.getAttributes().put(RetryGatewayFilterFactory.RETRY_ITERATION_KEY, retryConfig.getRetries());
+        }
+    }
+
+    private boolean wouldRetry(ServerWebExchange exchange, Throwable error) {
+        // The retry filter bumps the iteration after each attempt, starting from -1
+        Integer iteration = exchange.getAttribute(RetryGatewayFilterFactory.RETRY_ITERATION_KEY);
+        int next = iteration == null ? 0 : iteration + 1;
+        if (next >= retryConfig.getRetries()) {
+            return false;
+        }
+        if (!retryConfig.getMethods().contains(exchange.getRequest().getMethod())) {
+            return false;
+        }
+        return error == null || isRetryableException(error);
+    }
+
+    private boolean isRetryableStatus(HttpStatusCode status) {
+        if (status == null) {
+            return false;
+        }
+        HttpStatus.Series series = HttpStatus.Series.resolve(status.value());
+        return retryConfig.getStatuses().stream().anyMatch(s -> s.value() == status.value())
+                || (series != null && retryConfig.getSeries().contains(series));
+    }
+
+    private boolean isRetryableException(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            Throwable current = cause;
+            if (retryConfig.getExceptions().stream().anyMatch(type -> type.isInstance(current))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
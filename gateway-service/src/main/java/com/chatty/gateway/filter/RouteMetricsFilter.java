@@ -0,0 +1,65 @@
+
+package com.chatty.gateway.filter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+/**
+ * Times every routed request end to end, tagged by route id and outcome: "error" if it
+ * failed or ended with a server error, "rejected" if it ended with a 4xx, "cancelled" if
+ * the client went away first, and "allowed" otherwise, including responses the gateway
+ * served itself such as cache hits.
+ */
+@Component
+@RequiredArgsConstructor
+public class RouteMetricsFilter implements GlobalFilter, Ordered {
+
+    public static final String METRIC_NAME = "gateway.route.duration";
+
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        return chain.filter(exchange)
+                .doFinally(signal -> record(sample, exchange, signal));
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    private void record(Timer.Sample sample, ServerWebExchange exchange, SignalType signal) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        HttpStatusCode status = exchange.getResponse().getStatusCode();
+
+        String outcome;
+        if (signal == SignalType.CANCEL) {
+            outcome = "cancelled";
+        } else if (signal == SignalType.ON_ERROR || (status != null && status.is5xxServerError())) {
+            outcome = "error";
+        } else if (status != null && status.is4xxClientError()) {
+            outcome = "rejected";
+        } else {
+            outcome = "allowed";
+        }
+
+        sample.stop(Timer.builder(METRIC_NAME)
+                .description("End-to-end time of requests through a gateway route")
+                .tag("route", route != null ? route.getId() : "unknown")
+                .tag("outcome", outcome)
+                .register(meterRegistry));
+    }
+}
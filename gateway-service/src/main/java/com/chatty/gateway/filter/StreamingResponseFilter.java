@@ -0,0 +1,61 @@
+
+package com.chatty.gateway.filter;
+
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Passes streamed responses through chunk by chunk. Every chunk is flushed as soon as it
+ * arrives, whatever the content type, and the next one is only read from downstream once
+ * the client has taken it, so memory stays flat however long the response runs. A
+ * stream that goes quiet for longer than the idle timeout is cut off, which also closes
+ * the downstream connection.
+ */
+@Component
+@Slf4j
+public class StreamingResponseFilter implements GatewayFilter {
+
+    private final Duration idleTimeout;
+
+    public StreamingResponseFilter(@Value("${gateway.streaming.idle-timeout:60s}") Duration idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        // Ask buffering reverse proxies in front of the gateway to pass chunks straight on
+        exchange.getResponse().getHeaders().set("X-Accel-Buffering", "no");
+        return chain.filter(exchange.mutate().response(new StreamingResponse(exchange.getResponse())).build());
+    }
+
+    private class StreamingResponse extends ServerHttpResponseDecorator {
+
+        StreamingResponse(ServerHttpResponse delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            return writeAndFlushWith(Flux.from(body).map(Mono::just));
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            return super.writeAndFlushWith(Flux.from(body)
+                    .timeout(idleTimeout)
+                    .doOnError(e -> log.debug("Streaming response ended: {}", e.toString())));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+
+package com.chatty.gateway.filter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Times a single filter stage, excluding everything downstream of it. The clock stops
+ * when the filter hands the exchange on ("allowed"), or when it completes without doing
+ * so: "rejected" if it answered with a client error, "error" if it failed or answered
+ * with a server error.
+ */
+public class TimedGatewayFilter implements GatewayFilter {
+
+    public static final String METRIC_NAME = "gateway.filter.duration";
+
+    private final GatewayFilter delegate;
+    private final Timer allowed;
+    private final Timer rejected;
+    private final Timer error;
+
+    public TimedGatewayFilter(String stage, GatewayFilter delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.allowed = timer(stage, "allowed", meterRegistry);
+        this.rejected = timer(stage, "rejected", meterRegistry);
+        this.error = timer(stage, "error", meterRegistry);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            AtomicBoolean passed = new AtomicBoolean();
+
+            GatewayFilterChain timedChain = forwarded -> Mono.defer(() -> {
+                if (passed.compareAndSet(false, true)) {
+                    allowed.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+                return chain.filter(forwarded);
+            });
+
+            return delegate.filter(exchange, timedChain)
+                    .doOnSuccess(v -> {
+                        if (!passed.get()) {
+                            HttpStatusCode status = exchange.getResponse().getStatusCode();
+                            Timer outcome = status != null && status.is5xxServerError() ? error : rejected;
+                            outcome.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        }
+                    })
+                    .doOnError(e -> {
+                        if (!passed.get()) {
+                            error.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        }
+                    });
+        });
+    }
+
+    private static Timer timer(String stage, String outcome, MeterRegistry meterRegistry) {
+        return Timer.builder(METRIC_NAME)
+                .description("Time spent in a gateway filter stage, excluding downstream")
+                .tag("stage", stage)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,215 @@
+
+package com.chatty.gateway.filter;
+
+import com.chatty.gateway.dto.ApiKeyDetails;
+import com.chatty.gateway.service.ApiKeyQuotaService;
+import com.chatty.gateway.service.ApiKeyQuotaService.QuotaDecision;
+import com.chatty.gateway.service.TokenBucketRateLimiter;
+import com.chatty.gateway.service.TokenBucketRateLimiter.RateLimitDecision;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.ReactiveLoadBalancerClientFilter;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.socket.CloseStatus;
+import org.springframework.web.reactive.socket.WebSocketHandler;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import org.springframework.web.reactive.socket.client.ReactorNettyWebSocketClient;
+import org.springframework.web.reactive.socket.client.WebSocketClient;
+import org.springframework.web.reactive.socket.server.WebSocketService;
+import org.springframework.web.reactive.socket.server.support.HandshakeWebSocketService;
+import org.springframework.web.reactive.socket.server.upgrade.ReactorNettyRequestUpgradeStrategy;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.WebsocketClientSpec;
+import reactor.netty.http.server.WebsocketServerSpec;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Proxies chat WebSocket sessions to chatbot-service. The key is authenticated once at
+ * the handshake by the route's earlier filters, and then every client message is charged
+ * against the key's rate limit and quota, as one HTTP chat turn would be. A message over
+ * the limit is not forwarded; the client gets an error frame instead and the session
+ * stays open.
+ *
+ * Frames are relayed without copying. Each direction reads at most {@code prefetch}
+ * frames ahead of what the other side has accepted, and frame size is capped, so a
+ * session's buffered memory is bounded however slow either peer is. Sessions use
+ * unpooled downstream connections, since a pooled connection would be held for the whole
+ * session and the pool's limit would cap the number of sessions.
+ *
+ * Runs after the load balancer has picked an instance and must be the last filter of
+ * the route.
+ */
+@Component
+@Slf4j
+public class WebSocketProxyFilter implements GatewayFilter, Ordered {
+
+    private static final String SEC_WEBSOCKET_PROTOCOL = "Sec-WebSocket-Protocol";
+    private static final Set<String> SKIPPED_HEADERS = Set.of(
+            HttpHeaders.CONNECTION, HttpHeaders.UPGRADE, HttpHeaders.HOST, HttpHeaders.CONTENT_LENGTH,
+            HttpHeaders.TRANSFER_ENCODING, "Keep-Alive", HttpHeaders.TE, HttpHeaders.TRAILER,
+            "Sec-WebSocket-Key", "Sec-WebSocket-Version", "Sec-WebSocket-Extensions",
+            SEC_WEBSOCKET_PROTOCOL, "Sec-WebSocket-Accept");
+
+    private final TokenBucketRateLimiter rateLimiter;
+    private final ApiKeyQuotaService apiKeyQuotaService;
+    private final int defaultLimitPerMinute;
+    private final int prefetch;
+    private final int maxPendingNotices;
+    private final WebSocketService webSocketService;
+    private final WebSocketClient webSocketClient;
+
+    public WebSocketProxyFilter(TokenBucketRateLimiter rateLimiter,
+                                ApiKeyQuotaService apiKeyQuotaService,
+                                @Value("${gateway.rate-limit.default-limit-per-minute:10}") int defaultLimitPerMinute,
+                                @Value("${gateway.websocket.max-frame-size:65536}") int maxFrameSize,
+                                @Value("${gateway.websocket.prefetch:8}") int prefetch,
+                                @Value("${gateway.websocket.max-pending-notices:4}") int maxPendingNotices) {
+        this.rateLimiter = rateLimiter;
+        this.apiKeyQuotaService = apiKeyQuotaService;
+        this.defaultLimitPerMinute = defaultLimitPerMinute;
+        this.prefetch = prefetch;
+        this.maxPendingNotices = maxPendingNotices;
+        this.webSocketService = new HandshakeWebSocketService(new ReactorNettyRequestUpgradeStrategy(
+                () -> WebsocketServerSpec.builder().maxFramePayloadLength(maxFrameSize)));
+        this.webSocketClient = new ReactorNettyWebSocketClient(
+                HttpClient.create(ConnectionProvider.newConnection()),
+                () -> WebsocketClientSpec.builder().maxFramePayloadLength(maxFrameSize));
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        URI requestUrl = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR);
+        ApiKeyDetails apiKeyDetails = exchange.getAttribute(ApiKeyAuthenticationFilter.API_KEY_DETAILS_ATTR);
+        String apiKey = ApiKeyAuthenticationFilter.extractApiKey(exchange.getRequest());
+        if (requestUrl == null || apiKeyDetails == null || apiKey == null) {
+            return onError(exchange, "WebSocket session not authenticated", HttpStatus.UNAUTHORIZED);
+        }
+
+        URI target = downstreamUri(requestUrl);
+        HttpHeaders headers = new HttpHeaders();
+        exchange.getRequest().getHeaders().forEach((name, values) -> {
+            if (SKIPPED_HEADERS.stream().noneMatch(name::equalsIgnoreCase)) {
+                headers.addAll(name, values);
+            }
+        });
+        List<String> subProtocols = exchange.getRequest().getHeaders().getOrEmpty(SEC_WEBSOCKET_PROTOCOL);
+
+        ServerWebExchangeUtils.setAlreadyRouted(exchange);
+        return webSocketService.handleRequest(exchange, new WebSocketHandler() {
+            @Override
+            public List<String> getSubProtocols() {
+                return subProtocols.stream()
+                        .flatMap(value -> Arrays.stream(value.split(",")))
+                        .map(String::trim)
+                        .toList();
+            }
+
+            @Override
+            public Mono<Void> handle(WebSocketSession client) {
+                return webSocketClient.execute(target, headers, downstream -> relay(client, downstream, apiKey, apiKeyDetails));
+            }
+        });
+    }
+
+    @Override
+    public int getOrder() {
+        return ReactiveLoadBalancerClientFilter.LOAD_BALANCER_CLIENT_FILTER_ORDER + 1;
+    }
+
+    private Mono<Void> relay(WebSocketSession client, WebSocketSession downstream, String apiKey, ApiKeyDetails apiKeyDetails) {
+        int limitPerMinute = apiKeyDetails.getRateLimitPerMinute() > 0 ? apiKeyDetails.getRateLimitPerMinute() : defaultLimitPerMinute;
+        Sinks.Many<String> notices = Sinks.many().unicast().onBackpressureBuffer(new ArrayBlockingQueue<>(maxPendingNotices));
+
+        Flux<WebSocketMessage> upstream = client.receive()
+                .limitRate(prefetch)
+                .filter(message -> {
+                    if (message.getType() != WebSocketMessage.Type.TEXT && message.getType() != WebSocketMessage.Type.BINARY) {
+                        return true;
+                    }
+                    String rejection = admit(apiKey, limitPerMinute, apiKeyDetails);
+                    if (rejection != null) {
+                        // Dropped if the client is not reading its notices either
+                        notices.tryEmitNext(rejection);
+                        return false;
+                    }
+                    return true;
+                })
+                .doOnNext(WebSocketMessage::retain);
+
+        Flux<WebSocketMessage> toClient = Flux.merge(
+                downstream.receive().limitRate(prefetch).doOnNext(WebSocketMessage::retain),
+                notices.asFlux().map(client::textMessage));
+
+        Mono<Void> clientToDownstream = downstream.send(upstream)
+                .then(Mono.defer(() -> downstream.close()));
+        Mono<Void> downstreamToClient = client.send(toClient)
+                .then(Mono.defer(() -> client.close(CloseStatus.GOING_AWAY)));
+
+        // Whichever side finishes first ends the session on the other side too
+        return Mono.firstWithSignal(clientToDownstream, downstreamToClient)
+                .doFinally(signal -> notices.tryEmitComplete());
+    }
+
+    /**
+     * Charges one message to the key, returning the error frame to send back if it is
+     * over its rate limit or quota, or {@code null} if it may be forwarded.
+     */
+    private String admit(String apiKey, int limitPerMinute, ApiKeyDetails apiKeyDetails) {
+        RateLimitDecision rateLimit = rateLimiter.tryConsume(apiKey, limitPerMinute);
+        if (!rateLimit.allowed()) {
+            return "{\"error\":\"rate_limit_exceeded\",\"retryAfterSeconds\":" + rateLimit.retryAfterSeconds() + "}";
+        }
+        if (apiKeyDetails.getApiKeyId() != null) {
+            QuotaDecision quota = apiKeyQuotaService.tryAcquire(apiKeyDetails);
+            if (!quota.allowed()) {
+                return "{\"error\":\"quota_exceeded\",\"period\":\"" + quota.period()
+                        + "\",\"retryAfterSeconds\":" + quota.retryAfterSeconds() + "}";
+            }
+        }
+        return null;
+    }
+
+    private static URI downstreamUri(URI requestUrl) {
+        String scheme = "https".equals(requestUrl.getScheme()) || "wss".equals(requestUrl.getScheme()) ? "wss" : "ws";
+        // The key is carried in a header downstream, never in the URL
+        return UriComponentsBuilder.fromUri(requestUrl)
+                .scheme(scheme)
+                .replaceQueryParam(ApiKeyAuthenticationFilter.API_KEY_QUERY_PARAM)
+                .build(true)
+                .toUri();
+    }
+
+    /**
+     * Rejects the handshake with the reason as a plain-text body, which non-browser
+     * clients can show since the connection never becomes a WebSocket.
+     */
+    private Mono<Void> onError(ServerWebExchange exchange, String message, HttpStatus status) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(status);
+        response.getHeaders().setContentType(MediaType.TEXT_PLAIN);
+        DataBuffer body = response.bufferFactory().wrap(message.getBytes(StandardCharsets.UTF_8));
+        return response.writeWith(Mono.just(body));
+    }
+}
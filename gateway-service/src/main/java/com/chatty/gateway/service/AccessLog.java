@@ -0,0 +1,284 @@
+
+package com.chatty.gateway.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Structured access log with one JSON line per sampled exchange, written to the
+ * {@code com.chatty.gateway.access} logger. Request threads only copy a few references
+ * into a preallocated slot of a bounded lock-free ring buffer; a single background
+ * thread formats and writes the records. When the buffer is full the record is dropped
+ * and counted, so logging never blocks an event loop however fast records arrive.
+ * Records are sampled per outcome before they reach the buffer, so an abuse spike of
+ * rejected requests costs little more than a counter increment and a random draw.
+ * API keys are never written in full: the resolved key id is logged, or a short prefix
+ * when the key is unknown.
+ */
+@Service
+public class AccessLog {
+
+    private static final Logger ACCESS_LOGGER = LoggerFactory.getLogger("com.chatty.gateway.access");
+
+    public enum Outcome {
+        ALLOWED, REJECTED, ERROR, CANCELLED
+    }
+
+    private final RingBuffer buffer;
+    private final Map<Outcome, Double> sampleRates = new EnumMap<>(Outcome.class);
+    private final Map<Outcome, Counter> sampledOut = new EnumMap<>(Outcome.class);
+    private final Counter written;
+    private final Counter dropped;
+    private final int apiKeyVisibleChars;
+    private final long idleParkNanos;
+    private final StringBuilder line = new StringBuilder(256);
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public AccessLog(MeterRegistry meterRegistry,
+                     @Value("${gateway.access-log.buffer-size:8192}") int bufferSize,
+                     @Value("${gateway.access-log.sample-rate.allowed:1.0}") double allowedRate,
+                     @Value("${gateway.access-log.sample-rate.rejected:0.1}") double rejectedRate,
+                     @Value("${gateway.access-log.sample-rate.error:1.0}") double errorRate,
+                     @Value("${gateway.access-log.sample-rate.cancelled:1.0}") double cancelledRate,
+                     @Value("${gateway.access-log.api-key-visible-chars:11}") int apiKeyVisibleChars,
+                     @Value("${gateway.access-log.idle-park-ms:5}") long idleParkMs) {
+        this.buffer = new RingBuffer(bufferSize);
+        this.sampleRates.put(Outcome.ALLOWED, allowedRate);
+        this.sampleRates.put(Outcome.REJECTED, rejectedRate);
+        this.sampleRates.put(Outcome.ERROR, errorRate);
+        this.sampleRates.put(Outcome.CANCELLED, cancelledRate);
+        this.apiKeyVisibleChars = apiKeyVisibleChars;
+        this.idleParkNanos = TimeUnit.MILLISECONDS.toNanos(idleParkMs);
+
+        for (Outcome outcome : Outcome.values()) {
+            sampledOut.put(outcome, Counter.builder("gateway.access-log.records")
+                    .description("Access log records by what happened to them")
+                    .tag("outcome", outcome.name().toLowerCase())
+                    .tag("result", "sampled-out")
+                    .register(meterRegistry));
+        }
+        this.written = Counter.builder("gateway.access-log.records")
+                .description("Access log records by what happened to them")
+                .tag("outcome", "all")
+                .tag("result", "written")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("gateway.access-log.records")
+                .description("Access log records by what happened to them")
+                .tag("outcome", "all")
+                .tag("result", "dropped")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writer = new Thread(this::drainLoop, "gateway-access-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    /**
+     * Offers one exchange to the log. Never blocks; the record is skipped if it is not
+     * sampled or the buffer is full.
+     */
+    public void record(String method, String path, String routeId, int status, Outcome outcome, long durationNanos,
+                       String client, String apiKeyId, String apiKey) {
+        double rate = sampleRates.get(outcome);
+        if (rate < 1.0 && ThreadLocalRandom.current().nextDouble() >= rate) {
+            sampledOut.get(outcome).increment();
+            return;
+        }
+
+        long position = buffer.claim();
+        if (position < 0) {
+            dropped.increment();
+            return;
+        }
+        Slot slot = buffer.slot(position);
+        slot.timestampMillis = System.currentTimeMillis();
+        slot.method = method;
+        slot.path = path;
+        slot.routeId = routeId;
+        slot.status = status;
+        slot.outcome = outcome;
+        slot.durationNanos = durationNanos;
+        slot.client = client;
+        slot.apiKeyId = apiKeyId;
+        // Only a reference is kept here; the key is redacted on the writer thread
+        slot.apiKey = apiKeyId == null ? apiKey : null;
+        buffer.publish(position);
+    }
+
+    private void drainLoop() {
+        while (running) {
+            if (!drain()) {
+                LockSupport.parkNanos(idleParkNanos);
+            }
+        }
+        drain();
+    }
+
+    private boolean drain() {
+        boolean any = false;
+        Slot slot;
+        while ((slot = buffer.poll()) != null) {
+            any = true;
+            write(slot);
+            slot.clear();
+            buffer.release();
+            written.increment();
+        }
+        return any;
+    }
+
+    private void write(Slot slot) {
+        line.setLength(0);
+        line.append("{\"ts\":\"").append(Instant.ofEpochMilli(slot.timestampMillis)).append('"');
+        field("method", slot.method);
+        field("path", slot.path);
+        field("route", slot.routeId);
+        line.append(",\"status\":").append(slot.status);
+        field("outcome", slot.outcome.name().toLowerCase());
+        line.append(",\"durationMs\":").append(TimeUnit.NANOSECONDS.toMicros(slot.durationNanos) / 1000.0);
+        field("client", slot.client);
+        field("apiKeyId", slot.apiKeyId);
+        field("apiKey", redact(slot.apiKey));
+        line.append('}');
+        ACCESS_LOGGER.info(line.toString());
+    }
+
+    private void field(String name, String value) {
+        if (value == null) {
+            return;
+        }
+        line.append(",\"").append(name).append("\":\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < 0x20) {
+                line.append(' ');
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+
+    private String redact(String apiKey) {
+        if (apiKey == null) {
+            return null;
+        }
+        int visible = Math.min(apiKeyVisibleChars, apiKey.length() / 2);
+        return apiKey.substring(0, Math.max(0, visible)) + "***";
+    }
+
+    private static final class Slot {
+
+        // Ring position this slot is ready for: equal to the position when free for a
+        // producer, one past it once published for the consumer
+        volatile long sequence;
+
+        long timestampMillis;
+        String method;
+        String path;
+        String routeId;
+        int status;
+        Outcome outcome;
+        long durationNanos;
+        String client;
+        String apiKeyId;
+        String apiKey;
+
+        void clear() {
+            method = null;
+            path = null;
+            routeId = null;
+            outcome = null;
+            client = null;
+            apiKeyId = null;
+            apiKey = null;
+        }
+    }
+
+    /**
+     * Bounded multi-producer, single-consumer ring of preallocated slots. Producers claim
+     * a position with one CAS and publish it by advancing the slot's sequence; the
+     * consumer frees a slot by advancing its sequence a full lap.
+     */
+    private static final class RingBuffer {
+
+        private final Slot[] slots;
+        private final int mask;
+        private final AtomicLong tail = new AtomicLong();
+        private long head;
+
+        RingBuffer(int requestedSize) {
+            int size = Integer.highestOneBit(Math.max(2, requestedSize - 1)) << 1;
+            this.slots = new Slot[size];
+            this.mask = size - 1;
+            for (int i = 0; i < size; i++) {
+                slots[i] = new Slot();
+                slots[i].sequence = i;
+            }
+        }
+
+        /**
+         * Claims the next position, or returns -1 if the ring is full.
+         */
+        long claim() {
+            while (true) {
+                long position = tail.get();
+                long lag = slots[(int) position & mask].sequence - position;
+                if (lag == 0) {
+                    if (tail.compareAndSet(position, position + 1)) {
+                        return position;
+                    }
+                } else if (lag < 0) {
+                    return -1;
+                }
+            }
+        }
+
+        Slot slot(long position) {
+            return slots[(int) position & mask];
+        }
+
+        void publish(long position) {
+            slots[(int) position & mask].sequence = position + 1;
+        }
+
+        Slot poll() {
+            Slot slot = slots[(int) head & mask];
+            return slot.sequence == head + 1 ? slot : null;
+        }
+
+        void release() {
+            slots[(int) head & mask].sequence = head + slots.length;
+            head++;
+        }
+    }
+}
@@ -0,0 +1,349 @@
+
+package com.chatty.gateway.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-route adaptive concurrency limits using a gradient algorithm. Each route keeps a
+ * slow moving average of its round trip time as the no-queueing baseline. When recent
+ * RTTs rise above that baseline, requests are queueing downstream and the limit shrinks
+ * by the ratio of the two. While they stay close, the limit grows by a small allowance
+ * of about the square root of the limit. Failed and timed-out requests back the limit
+ * off multiplicatively.
+ *
+ * Requests that find the route at its limit wait in a weighted fair queue instead of
+ * failing at once. Each tenant's requests get start-time fair queueing tags spaced
+ * {@code 1 / weight} apart, and freed slots go to the waiter with the smallest finish
+ * tag. A saturated route therefore serves tenants in proportion to their weights,
+ * whatever rate each one sends at. Waiters give up after {@code max-wait}, and the queue
+ * is bounded per route and per tenant.
+ */
+@Service
+public class AdaptiveConcurrencyLimiter {
+
+    private final MeterRegistry meterRegistry;
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double smoothing;
+    private final double rttTolerance;
+    private final int longWindow;
+    private final double backoffRatio;
+    private final int maxQueued;
+    private final int maxQueuedPerTenant;
+    private final Duration maxWait;
+    private final Map<String, RouteLimit> routes = new ConcurrentHashMap<>();
+
+    public AdaptiveConcurrencyLimiter(MeterRegistry meterRegistry,
+                                      @Value("${gateway.concurrency-limit.initial-limit:20}") int initialLimit,
+                                      @Value("${gateway.concurrency-limit.min-limit:5}") int minLimit,
+                                      @Value("${gateway.concurrency-limit.max-limit:500}") int maxLimit,
+                                      @Value("${gateway.concurrency-limit.smoothing:0.2}") double smoothing,
+                                      @Value("${gateway.concurrency-limit.rtt-tolerance:1.5}") double rttTolerance,
+                                      @Value("${gateway.concurrency-limit.long-window:600}") int longWindow,
+                                      @Value("${gateway.concurrency-limit.backoff-ratio:0.9}") double backoffRatio,
+                                      @Value("${gateway.fair-queuing.max-queued:1000}") int maxQueued,
+                                      @Value("${gateway.fair-queuing.max-queued-per-tenant:100}") int maxQueuedPerTenant,
+                                      @Value("${gateway.fair-queuing.max-wait:1s}") Duration maxWait) {
+        this.meterRegistry = meterRegistry;
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.smoothing = smoothing;
+        this.rttTolerance = rttTolerance;
+        this.longWindow = longWindow;
+        this.backoffRatio = backoffRatio;
+        this.maxQueued = maxQueued;
+        this.maxQueuedPerTenant = maxQueuedPerTenant;
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * Reserves a slot on the route for the tenant, waiting for its fair share if the
+     * route is at its limit. Completes empty if the queue is full or the wait times out.
+     * Every permit emitted must be completed exactly once.
+     */
+    public Mono<Permit> acquire(String routeId, String tenant, double weight) {
+        RouteLimit route = routes.computeIfAbsent(routeId, this::newRouteLimit);
+        // Only take the fast path when nobody is waiting, or it would jump the queue
+        if (route.queued.get() == 0) {
+            Permit permit = route.tryAcquire();
+            if (permit != null) {
+                return Mono.just(permit);
+            }
+        }
+        return route.enqueue(tenant, weight);
+    }
+
+    private RouteLimit newRouteLimit(String routeId) {
+        RouteLimit route = new RouteLimit(initialLimit, Counter.builder("gateway.concurrency.rejected")
+                .description("Requests fast-failed because the route was at its concurrency limit")
+                .tag("route", routeId)
+                .register(meterRegistry));
+        Gauge.builder("gateway.concurrency.limit", route, r -> r.limit)
+                .description("Current adaptive concurrency limit")
+                .tag("route", routeId)
+                .register(meterRegistry);
+        Gauge.builder("gateway.concurrency.in-flight", route.inFlight, AtomicInteger::get)
+                .description("Requests currently in flight to the route")
+                .tag("route", routeId)
+                .register(meterRegistry);
+        Gauge.builder("gateway.concurrency.queued", route.queued, AtomicInteger::get)
+                .description("Requests waiting in the route's fair queue")
+                .tag("route", routeId)
+                .register(meterRegistry);
+        return route;
+    }
+
+    private final class RouteLimit {
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final Counter rejected;
+        private volatile double limit;
+        private double longRttNanos;
+
+        // Fair queue state, guarded by this
+        private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(
+                Comparator.comparingDouble((Waiter w) -> w.finishTag).thenComparingLong(w -> w.sequence));
+        private final Map<String, TenantQueue> tenants = new HashMap<>();
+        private double virtualTime;
+        private long nextSequence;
+
+        RouteLimit(int initialLimit, Counter rejected) {
+            this.limit = initialLimit;
+            this.rejected = rejected;
+        }
+
+        Permit tryAcquire() {
+            while (true) {
+                int current = inFlight.get();
+                if (current >= (int) limit) {
+                    return null;
+                }
+                if (inFlight.compareAndSet(current, current + 1)) {
+                    return new Permit(this, System.nanoTime(), current + 1);
+                }
+            }
+        }
+
+        Mono<Permit> enqueue(String tenant, double weight) {
+            Waiter waiter;
+            synchronized (this) {
+                TenantQueue tenantQueue = tenants.computeIfAbsent(tenant, t -> new TenantQueue());
+                if (waiters.size() >= maxQueued || tenantQueue.queued >= maxQueuedPerTenant) {
+                    if (tenantQueue.queued == 0) {
+                        tenants.remove(tenant);
+                    }
+                    rejected.increment();
+                    return Mono.empty();
+                }
+
+                double startTag = Math.max(virtualTime, tenantQueue.lastFinishTag);
+                waiter = new Waiter(tenant, startTag, startTag + 1.0 / Math.max(weight, 1e-6), nextSequence++);
+                tenantQueue.lastFinishTag = waiter.finishTag;
+                tenantQueue.queued++;
+                waiters.add(waiter);
+                queued.incrementAndGet();
+            }
+            // A slot may have been freed between the fast path and taking the lock
+            dispatch();
+
+            return waiter.sink.asMono()
+                    .timeout(maxWait, Mono.defer(() -> {
+                        if (waiter.cancel()) {
+                            abandon(waiter);
+                            rejected.increment();
+                            return Mono.empty();
+                        }
+                        // Granted just as the wait ran out
+                        return waiter.sink.asMono();
+                    }))
+                    .doOnCancel(() -> {
+                        if (waiter.cancel()) {
+                            abandon(waiter);
+                        } else {
+                            waiter.sink.asMono().subscribe(Permit::onIgnore);
+                        }
+                    });
+        }
+
+        /**
+         * Takes a waiter that gave up out of the queue, so it stops counting against the
+         * queue bounds and the fast path opens again once nobody is left waiting.
+         */
+        private synchronized void abandon(Waiter waiter) {
+            // Dispatch may have skipped it already
+            if (waiters.remove(waiter)) {
+                dequeued(waiter);
+            }
+        }
+
+        /**
+         * Hands free slots to waiters in finish-tag order, skipping any that gave up.
+         * Permits are emitted after the lock is released, since each one resumes a
+         * request's filter chain.
+         */
+        void dispatch() {
+            List<Waiter> granted = new ArrayList<>();
+            synchronized (this) {
+                while (!waiters.isEmpty()) {
+                    Waiter next = waiters.peek();
+                    if (!next.isWaiting()) {
+                        // Cancelled but not yet abandoned
+                        dequeued(waiters.poll());
+                        continue;
+                    }
+                    Permit permit = tryAcquire();
+                    if (permit == null) {
+                        break;
+                    }
+                    dequeued(waiters.poll());
+                    virtualTime = next.startTag;
+                    if (next.grant(permit)) {
+                        granted.add(next);
+                    } else {
+                        inFlight.decrementAndGet();
+                    }
+                }
+            }
+            granted.forEach(Waiter::emit);
+        }
+
+        private void dequeued(Waiter waiter) {
+            queued.decrementAndGet();
+            TenantQueue tenantQueue = tenants.get(waiter.tenant);
+            if (--tenantQueue.queued == 0) {
+                // An idle tenant restarts at the current virtual time and gets no credit
+                tenants.remove(waiter.tenant);
+            }
+        }
+
+        void release() {
+            inFlight.decrementAndGet();
+            if (queued.get() > 0) {
+                dispatch();
+            }
+        }
+
+        synchronized void onSample(long rttNanos, int inFlightAtStart, boolean dropped) {
+            double estimate = limit;
+            if (dropped) {
+                limit = clamp(estimate * backoffRatio);
+                return;
+            }
+            // The route was not using its limit, so the sample says nothing about it
+            if (inFlightAtStart < estimate / 2) {
+                return;
+            }
+
+            longRttNanos = longRttNanos == 0 ? rttNanos : longRttNanos + (rttNanos - longRttNanos) / longWindow;
+            // Let the baseline recover quickly after a sustained slowdown has passed
+            if (longRttNanos / rttNanos > 2) {
+                longRttNanos *= 0.95;
+            }
+
+            double gradient = Math.max(0.5, Math.min(1.0, rttTolerance * longRttNanos / rttNanos));
+            double target = estimate * gradient + Math.sqrt(estimate);
+            limit = clamp(estimate * (1 - smoothing) + target * smoothing);
+        }
+
+        private double clamp(double value) {
+            return Math.max(minLimit, Math.min(maxLimit, value));
+        }
+    }
+
+    private static final class TenantQueue {
+
+        private double lastFinishTag;
+        private int queued;
+    }
+
+    private static final class Waiter {
+
+        private static final int WAITING = 0;
+        private static final int GRANTED = 1;
+        private static final int CANCELLED = 2;
+
+        private final String tenant;
+        private final double startTag;
+        private final double finishTag;
+        private final long sequence;
+        private final Sinks.One<Permit> sink = Sinks.one();
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private Permit permit;
+
+        Waiter(String tenant, double startTag, double finishTag, long sequence) {
+            this.tenant = tenant;
+            this.startTag = startTag;
+            this.finishTag = finishTag;
+            this.sequence = sequence;
+        }
+
+        boolean isWaiting() {
+            return state.get() == WAITING;
+        }
+
+        boolean grant(Permit permit) {
+            if (!state.compareAndSet(WAITING, GRANTED)) {
+                return false;
+            }
+            this.permit = permit;
+            return true;
+        }
+
+        void emit() {
+            sink.tryEmitValue(permit);
+        }
+
+        boolean cancel() {
+            return state.compareAndSet(WAITING, CANCELLED);
+        }
+    }
+
+    public static final class Permit {
+
+        private final RouteLimit route;
+        private final long startNanos;
+        private final int inFlightAtStart;
+
+        private Permit(RouteLimit route, long startNanos, int inFlightAtStart) {
+            this.route = route;
+            this.startNanos = startNanos;
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        public void onSuccess() {
+            route.onSample(System.nanoTime() - startNanos, inFlightAtStart, false);
+            route.release();
+        }
+
+        public void onDropped() {
+            route.onSample(System.nanoTime() - startNanos, inFlightAtStart, true);
+            route.release();
+        }
+
+        /**
+         * Releases the slot without affecting the limit, e.g. when the client went away.
+         */
+        public void onIgnore() {
+            route.release();
+        }
+    }
+}
@@ -0,0 +1,205 @@
+
+package com.chatty.gateway.service;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Local copy of auth-service's Bloom filter of active API keys, which holds the
+ * {@link ApiKeyDigest} of each key rather than the key itself. A key the filter
+ * has never seen was definitely not issued and can be rejected without a remote call.
+ * The copy is refreshed with conditional requests, and keys created since the last
+ * refresh are added from the replica's change events. Keys are only rejected while the
+ * replica is in sync: without a live change stream, a key generated on another
+ * auth-service instance reaches neither this copy nor the one it is refreshed from until
+ * auth-service next rebuilds from Mongo. Every key is also let through if the copy has not
+ * been refreshed within the staleness limit, or after the replica resyncs until the copy
+ * has been refreshed again.
+ */
+@Service
+@Slf4j
+public class ApiKeyBloomFilter {
+
+    private static final String BLOOM_FILTER_KEYS_HEADER = "X-Bloom-Filter-Keys";
+
+    private final WebClient authServiceWebClient;
+    private final boolean enabled;
+    private final Duration refreshTimeout;
+    private final Duration maxStaleness;
+    private final Counter rejections;
+
+    private volatile LoadedFilter current;
+    private volatile boolean replicaInSync;
+    private volatile Instant replicaSyncedAt = Instant.MIN;
+    // Keys added while a refresh is in flight, replayed into the filter it loads
+    private List<String> addedDuringRefresh;
+
+    public ApiKeyBloomFilter(@Qualifier("authServiceWebClient") WebClient authServiceWebClient,
+                             MeterRegistry meterRegistry,
+                             @Value("${gateway.api-key-bloom-filter.enabled:true}") boolean enabled,
+                             @Value("${gateway.api-key-bloom-filter.refresh-timeout:5s}") Duration refreshTimeout,
+                             @Value("${gateway.api-key-bloom-filter.max-staleness:10m}") Duration maxStaleness) {
+        this.authServiceWebClient = authServiceWebClient;
+        this.enabled = enabled;
+        this.refreshTimeout = refreshTimeout;
+        this.maxStaleness = maxStaleness;
+
+        this.rejections = Counter.builder("gateway.api-key.bloom-filter.rejections")
+                .description("API keys rejected as never issued without a remote call")
+                .register(meterRegistry);
+        Gauge.builder("gateway.api-key.bloom-filter.size", this, f -> f.current != null ? f.current.sizeBytes() : 0)
+                .description("Serialized size of the API key Bloom filter")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("gateway.api-key.bloom-filter.keys", this, f -> f.current != null ? f.current.keyCount() : 0)
+                .description("API keys in the Bloom filter when it was built")
+                .register(meterRegistry);
+        Gauge.builder("gateway.api-key.bloom-filter.expected-fpp", this, f -> f.current != null ? f.current.filter().expectedFpp() : 1)
+                .description("Current false positive probability of the API key Bloom filter")
+                .register(meterRegistry);
+        Gauge.builder("gateway.api-key.bloom-filter.age", this, f -> f.current != null
+                        ? Duration.between(f.current.builtAt(), Instant.now()).toSeconds() : -1)
+                .description("Time since auth-service built the API key Bloom filter")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns {@code false} only if the key was definitely never issued.
+     */
+    public boolean mightContain(String apiKey) {
+        LoadedFilter loaded = current;
+        if (loaded == null
+                || !replicaInSync
+                || loaded.refreshedAt().isBefore(replicaSyncedAt)
+                || Duration.between(loaded.refreshedAt(), Instant.now()).compareTo(maxStaleness) > 0) {
+            return true;
+        }
+        if (loaded.filter().mightContain(ApiKeyDigest.of(apiKey))) {
+            return true;
+        }
+        rejections.increment();
+        return false;
+    }
+
+    /**
+     * Called when the replica has loaded a snapshot. Keys created while its change stream
+     * was down may be missing from a copy refreshed before then, so until the next refresh
+     * a miss lets the key through to the replica instead of rejecting it.
+     */
+    public void replicaSynced(Instant syncedAt) {
+        replicaSyncedAt = syncedAt;
+        replicaInSync = true;
+    }
+
+    /**
+     * Called when the replica loses its change stream, after which new keys may be missing
+     * from this copy for as long as it stays down.
+     */
+    public void replicaStale() {
+        replicaInSync = false;
+    }
+
+    /**
+     * Adds a key that was created since the filter was built, given as its digest.
+     */
+    public synchronized void add(String apiKeyHash) {
+        if (addedDuringRefresh != null) {
+            // The filter being fetched may have been built before this key was generated
+            addedDuringRefresh.add(apiKeyHash);
+        }
+        LoadedFilter loaded = current;
+        if (loaded != null) {
+            loaded.filter().put(apiKeyHash);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${gateway.api-key-bloom-filter.refresh-interval-ms:5000}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+
+        LoadedFilter loaded = current;
+        synchronized (this) {
+            addedDuringRefresh = new ArrayList<>();
+        }
+        try {
+            ResponseEntity<byte[]> response = authServiceWebClient
+                    .get()
+                    .uri("/internal/v1/api-keys/bloom-filter")
+                    .accept(MediaType.APPLICATION_OCTET_STREAM)
+                    .headers(headers -> {
+                        if (loaded != null) {
+                            headers.setIfNoneMatch(loaded.eTag());
+                        }
+                    })
+                    .retrieve()
+                    .toEntity(byte[].class)
+                    .block(refreshTimeout);
+
+            if (response == null) {
+                return;
+            }
+            if (response.getStatusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+                current = loaded.refreshed(Instant.now());
+                return;
+            }
+
+            LoadedFilter refreshed = load(response);
+            synchronized (this) {
+                addedDuringRefresh.forEach(refreshed.filter()::put);
+                current = refreshed;
+            }
+            log.debug("Loaded API key Bloom filter with {} keys", refreshed.keyCount());
+        } catch (Exception e) {
+            log.warn("Failed to refresh API key Bloom filter: {}", e.getMessage());
+        } finally {
+            synchronized (this) {
+                addedDuringRefresh = null;
+            }
+        }
+    }
+
+    private LoadedFilter load(ResponseEntity<byte[]> response) throws IOException {
+        byte[] bytes = response.getBody() != null ? response.getBody() : new byte[0];
+        BloomFilter<CharSequence> filter = BloomFilter.readFrom(
+                new ByteArrayInputStream(bytes), Funnels.stringFunnel(StandardCharsets.UTF_8));
+
+        HttpHeaders headers = response.getHeaders();
+        String keys = headers.getFirst(BLOOM_FILTER_KEYS_HEADER);
+        Instant builtAt = headers.getLastModified() > 0 ? Instant.ofEpochMilli(headers.getLastModified()) : Instant.now();
+
+        return new LoadedFilter(filter, headers.getETag(), bytes.length,
+                keys != null ? Long.parseLong(keys) : 0, builtAt, Instant.now());
+    }
+
+    private record LoadedFilter(BloomFilter<CharSequence> filter, String eTag, long sizeBytes, long keyCount,
+                                Instant builtAt, Instant refreshedAt) {
+
+        LoadedFilter refreshed(Instant now) {
+            return new LoadedFilter(filter, eTag, sizeBytes, keyCount, builtAt, now);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+
+package com.chatty.gateway.service;
+
+import com.chatty.gateway.dto.ApiKeyDetails;
+import com.chatty.gateway.dto.ApiKeyUsageCount;
+import com.chatty.gateway.dto.ApiKeyUsageDelta;
+import com.chatty.gateway.dto.ApiKeyUsageFlushRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Enforces {@code ApiKey.dailyLimit} and {@code ApiKey.monthlyLimit} from in-memory
+ * counters. Each counter combines the last cluster-wide total reported by auth-service
+ * with the requests this gateway has counted since; local deltas are flushed in batches
+ * in the background, so the request path never waits on a remote call. Periods are
+ * calendar days and months in UTC.
+ */
+@Service
+@Slf4j
+public class ApiKeyQuotaService {
+
+    private final WebClient authServiceWebClient;
+    private final Duration flushTimeout;
+    private final Map<CounterKey, QuotaCounter> counters = new ConcurrentHashMap<>();
+
+    public ApiKeyQuotaService(@Qualifier("authServiceWebClient") WebClient authServiceWebClient,
+                              @Value("${gateway.quota.flush-timeout:5s}") Duration flushTimeout) {
+        this.authServiceWebClient = authServiceWebClient;
+        this.flushTimeout = flushTimeout;
+    }
+
+    public QuotaDecision tryAcquire(ApiKeyDetails apiKeyDetails) {
+        Instant now = Instant.now();
+        QuotaWindow day = QuotaWindow.dayOf(now);
+        QuotaWindow month = QuotaWindow.monthOf(now);
+
+        QuotaCounter daily = counter(apiKeyDetails.getApiKeyId(), day);
+        if (!daily.tryIncrement(apiKeyDetails.getDailyLimit())) {
+            return QuotaDecision.rejected(day, now);
+        }
+
+        QuotaCounter monthly = counter(apiKeyDetails.getApiKeyId(), month);
+        if (!monthly.tryIncrement(apiKeyDetails.getMonthlyLimit())) {
+            daily.rollback();
+            return QuotaDecision.rejected(month, now);
+        }
+
+        return QuotaDecision.ALLOWED;
+    }
+
+    @Scheduled(fixedDelayString = "${gateway.quota.flush-interval-ms:2000}")
+    public void flush() {
+        Instant now = Instant.now();
+        Map<CounterKey, Long> drained = new HashMap<>();
+        List<ApiKeyUsageDelta> deltas = new ArrayList<>();
+
+        counters.forEach((key, counter) -> {
+            long delta = counter.drain();
+            if (delta > 0) {
+                drained.put(key, delta);
+                deltas.add(ApiKeyUsageDelta.builder()
+                        .apiKeyId(key.apiKeyId())
+                        .period(key.period())
+                        .periodEnd(counter.window.end())
+                        .delta(delta)
+                        .build());
+            } else if (counter.isIdle() && !now.isBefore(counter.window.end())) {
+                counters.remove(key, counter);
+            }
+        });
+
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        try {
+            List<ApiKeyUsageCount> totals = authServiceWebClient
+                    .post()
+                    .uri("/internal/v1/api-keys/usage")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(ApiKeyUsageFlushRequest.builder().deltas(deltas).build())
+                    .retrieve()
+                    .bodyToFlux(ApiKeyUsageCount.class)
+                    .collectList()
+                    .block(flushTimeout);
+
+            if (totals != null) {
+                totals.forEach(total -> {
+                    QuotaCounter counter = counters.get(new CounterKey(total.getApiKeyId(), total.getPeriod()));
+                    if (counter != null) {
+                        counter.confirmed.set(total.getCount());
+                    }
+                });
+            }
+            drained.forEach((key, delta) -> counters.get(key).flushed(delta));
+            log.debug("Flushed {} API key usage deltas", deltas.size());
+        } catch (Exception e) {
+            log.warn("Failed to flush API key usage, will retry on next run: {}", e.getMessage());
+            drained.forEach((key, delta) -> counters.get(key).restore(delta));
+        }
+    }
+
+    private QuotaCounter counter(String apiKeyId, QuotaWindow window) {
+        return counters.computeIfAbsent(new CounterKey(apiKeyId, window.period()), key -> new QuotaCounter(window));
+    }
+
+    private record CounterKey(String apiKeyId, String period) {
+    }
+
+    private record QuotaWindow(String period, Instant end) {
+
+        static QuotaWindow dayOf(Instant now) {
+            LocalDate day = LocalDate.ofInstant(now, ZoneOffset.UTC);
+            return new QuotaWindow("day:" + day, day.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant());
+        }
+
+        static QuotaWindow monthOf(Instant now) {
+            YearMonth month = YearMonth.from(LocalDate.ofInstant(now, ZoneOffset.UTC));
+            return new QuotaWindow("month:" + month, month.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant());
+        }
+    }
+
+    private static final class QuotaCounter {
+
+        private final QuotaWindow window;
+        // Last total reported by auth-service, including every replica's flushed deltas
+        private final AtomicLong confirmed = new AtomicLong();
+        // Counted here and sent to auth-service, awaiting the updated total
+        private final AtomicLong inFlight = new AtomicLong();
+        // Counted here and not yet sent
+        private final AtomicLong pending = new AtomicLong();
+
+        QuotaCounter(QuotaWindow window) {
+            this.window = window;
+        }
+
+        boolean tryIncrement(int limit) {
+            long local = pending.incrementAndGet();
+            if (limit > 0 && confirmed.get() + inFlight.get() + local > limit) {
+                pending.decrementAndGet();
+                return false;
+            }
+            return true;
+        }
+
+        void rollback() {
+            pending.decrementAndGet();
+        }
+
+        long drain() {
+            long delta = pending.getAndSet(0);
+            if (delta <= 0) {
+                // A rollback raced with the previous drain; keep the correction pending
+                pending.addAndGet(delta);
+                return 0;
+            }
+            inFlight.addAndGet(delta);
+            return delta;
+        }
+
+        void flushed(long delta) {
+            inFlight.addAndGet(-delta);
+        }
+
+        void restore(long delta) {
+            inFlight.addAndGet(-delta);
+            pending.addAndGet(delta);
+        }
+
+        boolean isIdle() {
+            return pending.get() == 0 && inFlight.get() == 0;
+        }
+    }
+
+    public record QuotaDecision(boolean allowed, String period, long retryAfterSeconds) {
+
+        static final QuotaDecision ALLOWED = new QuotaDecision(true, null, 0);
+
+        static QuotaDecision rejected(QuotaWindow window, Instant now) {
+            return new QuotaDecision(false, window.period(), Math.max(1, Duration.between(now, window.end()).toSeconds()));
+        }
+    }
+}
@@ -0,0 +1,192 @@
+
+package com.chatty.gateway.service;
+
+import com.chatty.gateway.dto.ApiKeyChangeEvent;
+import com.chatty.gateway.dto.ApiKeyDetails;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClientRequest;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index of every active API key, kept current by auth-service. Keys are held
+ * by their {@link ApiKeyDigest}, which is all auth-service sends. On start it
+ * subscribes to the change stream, loads the snapshot once the subscription is
+ * confirmed, and then applies create, revoke and expire events as they arrive. While
+ * the stream is down the replica reports itself as not ready, and callers fall back to
+ * validating keys remotely until a fresh snapshot has been loaded.
+ */
+@Service
+@Slf4j
+public class ApiKeyReplica {
+
+    private static final String CONNECTED_EVENT = "connected";
+    private static final ParameterizedTypeReference<ServerSentEvent<ApiKeyChangeEvent>> CHANGE_EVENT_TYPE =
+            new ParameterizedTypeReference<>() {};
+
+    private final WebClient authServiceWebClient;
+    private final ApiKeyBloomFilter apiKeyBloomFilter;
+    private final boolean enabled;
+    private final Duration streamIdleTimeout;
+    private final Duration snapshotTimeout;
+    private final Duration reconnectBackoff;
+    // Keyed by ApiKeyDigest
+    private final Map<String, ApiKeyDetails> activeKeys = new ConcurrentHashMap<>();
+
+    private volatile boolean ready;
+    private Disposable subscription;
+
+    public ApiKeyReplica(@Qualifier("authServiceWebClient") WebClient authServiceWebClient,
+                         ApiKeyBloomFilter apiKeyBloomFilter,
+                         MeterRegistry meterRegistry,
+                         @Value("${gateway.api-key-replica.enabled:true}") boolean enabled,
+                         @Value("${gateway.api-key-replica.stream-idle-timeout:45s}") Duration streamIdleTimeout,
+                         @Value("${gateway.api-key-replica.snapshot-timeout:30s}") Duration snapshotTimeout,
+                         @Value("${gateway.api-key-replica.reconnect-backoff:1s}") Duration reconnectBackoff) {
+        this.authServiceWebClient = authServiceWebClient;
+        this.apiKeyBloomFilter = apiKeyBloomFilter;
+        this.enabled = enabled;
+        this.streamIdleTimeout = streamIdleTimeout;
+        this.snapshotTimeout = snapshotTimeout;
+        this.reconnectBackoff = reconnectBackoff;
+
+        Gauge.builder("gateway.api-key.replica.size", activeKeys, Map::size)
+                .description("Active API keys held by the local replica")
+                .register(meterRegistry);
+        Gauge.builder("gateway.api-key.replica.ready", this, replica -> replica.ready ? 1 : 0)
+                .description("Whether the replica is in sync and serving lookups")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            log.info("API key replica is disabled, keys will be validated remotely");
+            return;
+        }
+
+        subscription = Flux.defer(this::streamChanges)
+                .concatMap(this::onEvent)
+                .doOnError(e -> markStale("API key change stream failed: " + e.getMessage()))
+                .doOnComplete(() -> markStale("API key change stream closed"))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, reconnectBackoff)
+                        .maxBackoff(Duration.ofMinutes(1))
+                        .transientErrors(true))
+                .repeatWhen(completed -> completed.delayElements(reconnectBackoff))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Returns the details of an active key, or {@code null} if the key is unknown,
+     * revoked or expired. Only meaningful while {@link #isReady()} is true.
+     */
+    public ApiKeyDetails lookup(String apiKey) {
+        String apiKeyHash = ApiKeyDigest.of(apiKey);
+        ApiKeyDetails details = activeKeys.get(apiKeyHash);
+        if (details != null && details.getExpiresAt() != null && details.getExpiresAt().isBefore(Instant.now())) {
+            activeKeys.remove(apiKeyHash, details);
+            return null;
+        }
+        return details;
+    }
+
+    private Flux<ServerSentEvent<ApiKeyChangeEvent>> streamChanges() {
+        return authServiceWebClient
+                .get()
+                .uri("/internal/v1/api-keys/changes")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                // auth-service sends heartbeats, so a silent stream means a dead connection
+                .httpRequest(httpRequest -> {
+                    HttpClientRequest reactorRequest = httpRequest.getNativeRequest();
+                    reactorRequest.responseTimeout(streamIdleTimeout);
+                })
+                .retrieve()
+                .bodyToFlux(CHANGE_EVENT_TYPE);
+    }
+
+    private Mono<Void> onEvent(ServerSentEvent<ApiKeyChangeEvent> event) {
+        if (CONNECTED_EVENT.equals(event.event())) {
+            // Changes are already flowing to us; later events queue behind the snapshot
+            return loadSnapshot().doOnNext(this::applySnapshot).then();
+        }
+        if (event.data() != null) {
+            apply(event.data());
+        }
+        return Mono.empty();
+    }
+
+    private Mono<List<ApiKeyChangeEvent>> loadSnapshot() {
+        return authServiceWebClient
+                .get()
+                .uri("/internal/v1/api-keys/snapshot")
+                .accept(MediaType.APPLICATION_JSON)
+                .httpRequest(httpRequest -> {
+                    HttpClientRequest reactorRequest = httpRequest.getNativeRequest();
+                    reactorRequest.responseTimeout(snapshotTimeout);
+                })
+                .retrieve()
+                .bodyToFlux(ApiKeyChangeEvent.class)
+                .collectList();
+    }
+
+    private void applySnapshot(List<ApiKeyChangeEvent> snapshot) {
+        activeKeys.clear();
+        snapshot.forEach(this::apply);
+        ready = true;
+        apiKeyBloomFilter.replicaSynced(Instant.now());
+        log.info("API key replica in sync with {} active keys", activeKeys.size());
+    }
+
+    private void apply(ApiKeyChangeEvent event) {
+        if (event.getType() == ApiKeyChangeEvent.ChangeType.UPSERT
+                && event.getApiKeyHash() != null
+                && event.getDetails() != null
+                && event.getDetails().isValid()) {
+            activeKeys.put(event.getApiKeyHash(), event.getDetails());
+            apiKeyBloomFilter.add(event.getApiKeyHash());
+        } else if (event.getApiKeyHash() != null) {
+            activeKeys.remove(event.getApiKeyHash());
+        } else if (event.getApiKeyId() != null) {
+            activeKeys.values().removeIf(details -> event.getApiKeyId().equals(details.getApiKeyId()));
+        }
+    }
+
+    private void markStale(String reason) {
+        if (ready) {
+            log.warn("{}, falling back to remote API key validation", reason);
+        }
+        ready = false;
+        apiKeyBloomFilter.replicaStale();
+    }
+}
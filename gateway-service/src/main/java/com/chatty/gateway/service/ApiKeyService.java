@@ -1,35 +1,115 @@
 
 package com.chatty.gateway.service;
 
-import lombok.RequiredArgsConstructor;
+import com.chatty.gateway.dto.ApiKeyDetails;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.time.Instant;
+
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class ApiKeyService {
 
-    @Value("${services.auth-service.url}")
-    private String authServiceUrl;
-    
-    private final WebClient.Builder webClientBuilder;
+    private static final String CACHE_NAME = "gateway.api-key.validation";
+
+    private final WebClient authValidationWebClient;
+    private final ApiKeyReplica apiKeyReplica;
+    private final AsyncCache<String, ApiKeyDetails> validationCache;
+
+    public ApiKeyService(@Qualifier("authValidationWebClient") WebClient authValidationWebClient,
+                         ApiKeyReplica apiKeyReplica,
+                         MeterRegistry meterRegistry,
+                         @Value("${gateway.api-key-cache.maximum-size:10000}") long maximumSize,
+                         @Value("${gateway.api-key-cache.valid-ttl:60s}") Duration validTtl,
+                         @Value("${gateway.api-key-cache.invalid-ttl:10s}") Duration invalidTtl) {
+        this.authValidationWebClient = authValidationWebClient;
+        this.apiKeyReplica = apiKeyReplica;
+        this.validationCache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new ValidationExpiry(validTtl, invalidTtl))
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, validationCache, CACHE_NAME);
+    }
 
     public Mono<Boolean> validateApiKey(String apiKey) {
-        log.debug("Validating API key");
-        
-        return webClientBuilder
-                .baseUrl(authServiceUrl)
-                .build()
+        return resolveApiKey(apiKey).map(ApiKeyDetails::isValid);
+    }
+
+    /**
+     * Resolves an API key to its details. While the local replica is in sync this is a
+     * hash lookup; otherwise repeated lookups are served from the local cache. Concurrent
+     * cache misses for the same key share a single in-flight call to auth-service, and
+     * failed calls are not cached so a transient outage does not pin keys as invalid.
+     */
+    public Mono<ApiKeyDetails> resolveApiKey(String apiKey) {
+        if (apiKeyReplica.isReady()) {
+            ApiKeyDetails details = apiKeyReplica.lookup(apiKey);
+            return Mono.just(details != null ? details : ApiKeyDetails.invalid());
+        }
+
+        return Mono.fromFuture(validationCache.get(apiKey, (key, executor) -> fetchApiKeyDetails(key).toFuture()))
+                .onErrorReturn(ApiKeyDetails.invalid());
+    }
+
+    private Mono<ApiKeyDetails> fetchApiKeyDetails(String apiKey) {
+        log.debug("Resolving API key against auth-service");
+
+        return authValidationWebClient
                 .get()
-                .uri("/api/v1/api-keys/validate/{apiKey}", apiKey)
+                .uri("/internal/v1/api-keys/{apiKey}", apiKey)
                 .accept(MediaType.APPLICATION_JSON)
                 .retrieve()
-                .bodyToMono(Boolean.class)
-                .onErrorReturn(false);
+                .bodyToMono(ApiKeyDetails.class)
+                .defaultIfEmpty(ApiKeyDetails.invalid())
+                // Unknown keys are a definitive answer and are cached like revoked ones
+                .onErrorResume(WebClientResponseException.NotFound.class, e -> Mono.just(ApiKeyDetails.invalid()));
+    }
+
+    private static class ValidationExpiry implements Expiry<String, ApiKeyDetails> {
+
+        private final Duration validTtl;
+        private final Duration invalidTtl;
+
+        ValidationExpiry(Duration validTtl, Duration invalidTtl) {
+            this.validTtl = validTtl;
+            this.invalidTtl = invalidTtl;
+        }
+
+        @Override
+        public long expireAfterCreate(String key, ApiKeyDetails details, long currentTime) {
+            if (!details.isValid()) {
+                return invalidTtl.toNanos();
+            }
+            if (details.getExpiresAt() == null) {
+                return validTtl.toNanos();
+            }
+            // Never serve a key from cache past its own expiry
+            Duration untilExpiry = Duration.between(Instant.now(), details.getExpiresAt());
+            return untilExpiry.compareTo(validTtl) < 0 ? Math.max(0, untilExpiry.toNanos()) : validTtl.toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, ApiKeyDetails details, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, details, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, ApiKeyDetails details, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
 }
@@ -0,0 +1,66 @@
+
+package com.chatty.gateway.service;
+
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.ReactiveDiscoveryClient;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * Instances of {@code auth-service-validation}. These are the auth-service instances
+ * registered in Eureka, each addressed on the port of its reactive API key validation
+ * listener, which it publishes as {@code validation-port} metadata. Instances without
+ * that metadata keep their main port. The same endpoint is still served there, so
+ * neither side of a rollout has to wait for the other.
+ */
+public class AuthValidationInstanceListSupplier implements ServiceInstanceListSupplier {
+
+    public static final String SERVICE_ID = "auth-service-validation";
+
+    private static final String AUTH_SERVICE_ID = "auth-service";
+    private static final String VALIDATION_PORT_METADATA = "validation-port";
+
+    private final ReactiveDiscoveryClient discoveryClient;
+
+    public AuthValidationInstanceListSupplier(ReactiveDiscoveryClient discoveryClient) {
+        this.discoveryClient = discoveryClient;
+    }
+
+    @Override
+    public String getServiceId() {
+        return SERVICE_ID;
+    }
+
+    @Override
+    public Flux<List<ServiceInstance>> get() {
+        return Flux.defer(() -> discoveryClient.getInstances(AUTH_SERVICE_ID)
+                .map(AuthValidationInstanceListSupplier::toValidationInstance)
+                .collectList()
+                .flux());
+    }
+
+    private static ServiceInstance toValidationInstance(ServiceInstance instance) {
+        return new DefaultServiceInstance(
+                instance.getInstanceId() + ":validation",
+                SERVICE_ID,
+                instance.getHost(),
+                validationPort(instance),
+                instance.isSecure(),
+                instance.getMetadata());
+    }
+
+    private static int validationPort(ServiceInstance instance) {
+        String port = instance.getMetadata().get(VALIDATION_PORT_METADATA);
+        if (port == null) {
+            return instance.getPort();
+        }
+        try {
+            return Integer.parseInt(port);
+        } catch (NumberFormatException e) {
+            return instance.getPort();
+        }
+    }
+}
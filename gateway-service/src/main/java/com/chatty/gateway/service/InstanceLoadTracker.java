@@ -0,0 +1,289 @@
+
+package com.chatty.gateway.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.CompletionContext;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerLifecycle;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.client.loadbalancer.ResponseData;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load statistics for every instance the gateway sends requests to, fed by the load
+ * balancer lifecycle of both gateway routes and load-balanced WebClients. For each
+ * instance it tracks the requests in flight and a peak EWMA of response time: a slower
+ * sample is taken at once, and faster ones pull the average down over
+ * {@code decay-time}. It also does outlier detection: an instance whose last
+ * {@code consecutive-errors} requests all failed with a 5xx or connection error is
+ * ejected for {@code base-ejection-time}, and each further ejection doubles the time up
+ * to {@code max-ejection-time}. Each request gives back its in-flight slot exactly once,
+ * whether it completes, is cancelled or is abandoned.
+ */
+@Service
+@Slf4j
+public class InstanceLoadTracker implements LoadBalancerLifecycle<Object, Object, ServiceInstance> {
+
+    /**
+     * Route metadata flag for streams and WebSocket sessions, whose duration says nothing
+     * about how fast the instance is and is kept out of its latency average.
+     */
+    public static final String LONG_LIVED_METADATA = "long-lived";
+
+    private final MeterRegistry meterRegistry;
+    private final double decayNanos;
+    private final int consecutiveErrors;
+    private final long baseEjectionNanos;
+    private final long maxEjectionNanos;
+    private final Map<String, InstanceLoad> instances = new ConcurrentHashMap<>();
+
+    /**
+     * Requests in flight, keyed by the load balancer response they were started with. Keys
+     * are weak and compared by identity, so a request that is dropped without completing
+     * or being cancelled, such as a cancelled WebClient call, still gives back its
+     * in-flight slot once the response is garbage collected.
+     */
+    private final Map<Response<ServiceInstance>, InFlightRequest> inFlightRequests = Caffeine.newBuilder()
+            .weakKeys()
+            .<Response<ServiceInstance>, InFlightRequest>removalListener((lbResponse, request, cause) -> {
+                if (cause == RemovalCause.COLLECTED && request != null) {
+                    request.release();
+                }
+            })
+            .build()
+            .asMap();
+
+    public InstanceLoadTracker(MeterRegistry meterRegistry,
+                               @Value("${gateway.load-balancer.decay-time:10s}") Duration decayTime,
+                               @Value("${gateway.load-balancer.outlier.consecutive-errors:5}") int consecutiveErrors,
+                               @Value("${gateway.load-balancer.outlier.base-ejection-time:30s}") Duration baseEjectionTime,
+                               @Value("${gateway.load-balancer.outlier.max-ejection-time:5m}") Duration maxEjectionTime) {
+        this.meterRegistry = meterRegistry;
+        this.decayNanos = decayTime.toNanos();
+        this.consecutiveErrors = consecutiveErrors;
+        this.baseEjectionNanos = baseEjectionTime.toNanos();
+        this.maxEjectionNanos = maxEjectionTime.toNanos();
+    }
+
+    public InstanceLoad loadOf(ServiceInstance instance) {
+        return instances.computeIfAbsent(keyOf(instance), key -> newInstanceLoad(instance));
+    }
+
+    @Override
+    public boolean supports(Class requestContextClass, Class responseClass, Class serverTypeClass) {
+        return ServiceInstance.class.isAssignableFrom(serverTypeClass);
+    }
+
+    @Override
+    public void onStart(Request<Object> request) {
+    }
+
+    @Override
+    public void onStartRequest(Request<Object> request, Response<ServiceInstance> lbResponse) {
+        if (!lbResponse.hasServer()) {
+            return;
+        }
+        InstanceLoad load = loadOf(lbResponse.getServer());
+        load.inFlight.incrementAndGet();
+        inFlightRequests.put(lbResponse, new InFlightRequest(load, System.nanoTime()));
+    }
+
+    @Override
+    public void onComplete(CompletionContext<Object, ServiceInstance, Object> completionContext) {
+        Response<ServiceInstance> lbResponse = completionContext.getLoadBalancerResponse();
+        InFlightRequest request = lbResponse == null ? null : inFlightRequests.remove(lbResponse);
+        if (request == null || !request.release()
+                || completionContext.status() == CompletionContext.Status.DISCARD) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        if (!request.longLived && !isLongLived(completionContext.getLoadBalancerRequest().getContext())) {
+            request.load.recordLatency(now - request.startNanos, now);
+        }
+
+        boolean failed = completionContext.status() == CompletionContext.Status.FAILED;
+        if (completionContext.getClientResponse() instanceof ResponseData response) {
+            HttpStatusCode status = response.getHttpStatus();
+            failed |= status != null && status.is5xxServerError();
+        }
+        if (failed) {
+            request.load.recordError(now);
+        } else {
+            request.load.recordSuccess(now);
+        }
+    }
+
+    /**
+     * Ends a request that was cancelled before it completed: the client went away, a
+     * circuit breaker timed it out, or it lost a hedge. The load balancer lifecycle has no
+     * cancel signal, so {@link com.chatty.gateway.filter.InstanceLoadFilter} reports these
+     * for gateway routes. The time it ran is taken as a latency sample, which the peak
+     * EWMA adopts at once if it is slower than the average, without counting as an error.
+     */
+    public void onCancel(Response<ServiceInstance> lbResponse) {
+        InFlightRequest request = inFlightRequests.remove(lbResponse);
+        if (request == null || !request.release()) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (!request.longLived) {
+            request.load.recordLatency(now - request.startNanos, now);
+        }
+    }
+
+    /** Keeps a request on a long-lived route out of its instance's latency average. */
+    public void markLongLived(Response<ServiceInstance> lbResponse) {
+        InFlightRequest request = inFlightRequests.get(lbResponse);
+        if (request != null) {
+            request.longLived = true;
+        }
+    }
+
+    private static boolean isLongLived(Object context) {
+        if (!(context instanceof RequestDataContext requestDataContext) || requestDataContext.getClientRequest() == null) {
+            return false;
+        }
+        Map<String, Object> attributes = requestDataContext.getClientRequest().getAttributes();
+        return attributes != null
+                && attributes.get(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR) instanceof Route route
+                && Boolean.TRUE.equals(route.getMetadata().get(LONG_LIVED_METADATA));
+    }
+
+    private InstanceLoad newInstanceLoad(ServiceInstance instance) {
+        InstanceLoad load = new InstanceLoad(keyOf(instance), Counter.builder("gateway.load-balancer.ejections")
+                .description("Times an instance was ejected by outlier detection")
+                .tag("service", String.valueOf(instance.getServiceId()).toLowerCase())
+                .tag("instance", instance.getHost() + ":" + instance.getPort())
+                .register(meterRegistry));
+        Gauge.builder("gateway.load-balancer.in-flight", load.inFlight, AtomicInteger::get)
+                .description("Requests in flight to the instance")
+                .tag("service", String.valueOf(instance.getServiceId()).toLowerCase())
+                .tag("instance", instance.getHost() + ":" + instance.getPort())
+                .register(meterRegistry);
+        Gauge.builder("gateway.load-balancer.latency-ewma", load, l -> l.ewmaNanos / 1e9)
+                .baseUnit("seconds")
+                .description("Peak EWMA of the instance's response time")
+                .tag("service", String.valueOf(instance.getServiceId()).toLowerCase())
+                .tag("instance", instance.getHost() + ":" + instance.getPort())
+                .register(meterRegistry);
+        return load;
+    }
+
+    private static String keyOf(ServiceInstance instance) {
+        return instance.getServiceId() + "/" + instance.getHost() + ":" + instance.getPort();
+    }
+
+    private static final class InFlightRequest {
+
+        private final InstanceLoad load;
+        private final long startNanos;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile boolean longLived;
+
+        InFlightRequest(InstanceLoad load, long startNanos) {
+            this.load = load;
+            this.startNanos = startNanos;
+        }
+
+        /** Gives back the in-flight slot, returning false if it was already given back. */
+        boolean release() {
+            if (!released.compareAndSet(false, true)) {
+                return false;
+            }
+            load.inFlight.decrementAndGet();
+            return true;
+        }
+    }
+
+    public final class InstanceLoad {
+
+        private final String key;
+        private final Counter ejections;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger consecutiveErrors = new AtomicInteger();
+        private volatile double ewmaNanos;
+        private volatile long lastSampleNanos;
+        private volatile long ejectedAtNanos;
+        private volatile long ejectedUntilNanos;
+        private volatile int timesEjected;
+
+        InstanceLoad(String key, Counter ejections) {
+            this.key = key;
+            this.ejections = ejections;
+        }
+
+        /**
+         * Expected cost of sending one more request here: latency times queue depth. An
+         * instance with no samples yet takes one probe request at a time until it has one.
+         */
+        public double cost() {
+            int queued = inFlight.get();
+            if (ewmaNanos == 0) {
+                return queued == 0 ? 0 : Double.MAX_VALUE;
+            }
+            return ewmaNanos * (queued + 1);
+        }
+
+        public boolean isEjected(long now) {
+            return now - ejectedUntilNanos < 0;
+        }
+
+        /** When the current or most recent ejection started, in {@link System#nanoTime()} terms. */
+        public long ejectedAtNanos() {
+            return ejectedAtNanos;
+        }
+
+        synchronized void recordLatency(long rttNanos, long now) {
+            if (ewmaNanos == 0 || rttNanos > ewmaNanos) {
+                ewmaNanos = rttNanos;
+            } else {
+                double weight = Math.exp(-(now - lastSampleNanos) / decayNanos);
+                ewmaNanos = ewmaNanos * weight + rttNanos * (1 - weight);
+            }
+            lastSampleNanos = now;
+        }
+
+        void recordError(long now) {
+            if (consecutiveErrors.incrementAndGet() < InstanceLoadTracker.this.consecutiveErrors || isEjected(now)) {
+                return;
+            }
+            synchronized (this) {
+                long ejection = Math.min(maxEjectionNanos, baseEjectionNanos << Math.min(timesEjected, 16));
+                timesEjected++;
+                ejectedAtNanos = now;
+                ejectedUntilNanos = now + ejection;
+                consecutiveErrors.set(0);
+                ejections.increment();
+                log.warn("Ejecting {} for {}ms after consecutive errors", key, ejection / 1_000_000);
+            }
+        }
+
+        void recordSuccess(long now) {
+            consecutiveErrors.set(0);
+            // An instance that stays healthy long enough after an ejection starts over
+            if (timesEjected > 0 && now - ejectedUntilNanos > maxEjectionNanos) {
+                synchronized (this) {
+                    timesEjected = 0;
+                }
+            }
+        }
+    }
+}
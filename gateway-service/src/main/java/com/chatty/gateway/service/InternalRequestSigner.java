@@ -0,0 +1,63 @@
+
+package com.chatty.gateway.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Signs the gateway's calls to auth-service's {@code /internal/**} endpoints. The
+ * {@code X-Internal-Auth} header is {@code <issuedAt>.<mac>}: issuedAt is in epoch
+ * seconds and the MAC is HMAC-SHA256 over {@code internal.<method>.<path>.<issuedAt>}
+ * with the identity secret. The {@code internal} prefix keeps these MACs distinct from
+ * identity assertions, and binding the method and path stops a captured header from
+ * being replayed against another endpoint.
+ */
+@Service
+public class InternalRequestSigner {
+
+    public static final String HEADER = "X-Internal-Auth";
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private final ThreadLocal<Mac> macs;
+
+    public InternalRequestSigner(@Value("${security.identity.secret-key}") String secretKey) {
+        SecretKeySpec key = new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(ALGORITHM + " is not available", e);
+            }
+        });
+    }
+
+    public String sign(String method, String path) {
+        long issuedAt = Instant.now().getEpochSecond();
+        String payload = "internal." + method + "." + path + "." + issuedAt;
+        byte[] mac = macs.get().doFinal(payload.getBytes(StandardCharsets.UTF_8));
+        return issuedAt + "." + ENCODER.encodeToString(mac);
+    }
+
+    /**
+     * Adds the header to every request a WebClient sends. The path is signed as sent,
+     * without the query string.
+     */
+    public ExchangeFilterFunction exchangeFilter() {
+        return (request, next) -> next.exchange(ClientRequest.from(request)
+                .header(HEADER, sign(request.method().name(), request.url().getRawPath()))
+                .build());
+    }
+}
@@ -1,24 +1,85 @@
 
 package com.chatty.gateway.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.security.Key;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.function.Function;
 
 @Service
 public class JwtService {
 
-    @Value("${security.jwt.secret-key}")
-    private String secretKey;
+    private static final String CACHE_NAME = "gateway.jwt.verified";
+    private static final String CUSTOMER_ID_CLAIM = "customerId";
+    private static final String ROLES_CLAIM = "roles";
+
+    private final JwtParser parser;
+    private final Cache<String, VerifiedToken> verifiedTokens;
+
+    public JwtService(@Value("${security.jwt.secret-key}") String secretKey,
+                      @Value("${gateway.jwt-cache.maximum-size:10000}") long maximumSize,
+                      MeterRegistry meterRegistry) {
+        this.parser = Jwts
+                .parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(secretKey.getBytes()))
+                .build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new TokenExpiry())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, CACHE_NAME);
+    }
+
+    /**
+     * Verifies the token's signature and expiry and returns its subject, customer, roles
+     * and expiry. Tokens issued before the customer and role claims were added verify
+     * with no customer and no roles.
+     * Tokens that verified before are served from the cache until they expire, keyed by
+     * a digest so raw tokens are never held in memory.
+     *
+     * @throws io.jsonwebtoken.JwtException if the token is malformed, forged or expired
+     */
+    public VerifiedToken verify(String token) {
+        String digest = digest(token);
+        VerifiedToken cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null) {
+            return cached;
+        }
+
+        Claims claims = extractAllClaims(token);
+        Date expiration = claims.getExpiration();
+        VerifiedToken verified = new VerifiedToken(
+                claims.getSubject(),
+                claims.get(CUSTOMER_ID_CLAIM, String.class),
+                rolesOf(claims),
+                expiration != null ? expiration.toInstant() : null);
+        if (verified.expiresAt() != null) {
+            verifiedTokens.put(digest, verified);
+        }
+        return verified;
+    }
 
     public String extractUsername(String token) {
-        return extractClaim(token, Claims::getSubject);
+        return verify(token).subject();
     }
 
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
@@ -27,28 +88,60 @@ public class JwtService {
     }
 
     public boolean validateToken(String token) {
-        return !isTokenExpired(token);
+        VerifiedToken verified = verify(token);
+        return verified.expiresAt() == null || verified.expiresAt().isAfter(Instant.now());
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    private Claims extractAllClaims(String token) {
+        return parser
+                .parseClaimsJws(token)
+                .getBody();
     }
 
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    private static List<String> rolesOf(Claims claims) {
+        Object roles = claims.get(ROLES_CLAIM);
+        if (!(roles instanceof Collection<?> values)) {
+            return List.of();
+        }
+        return values.stream().map(String::valueOf).toList();
     }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts
-                .parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
 
-    private Key getSigningKey() {
-        byte[] keyBytes = secretKey.getBytes();
-        return Keys.hmacShaKeyFor(keyBytes);
+    public record VerifiedToken(String subject, String customerId, List<String> roles, Instant expiresAt) {
+    }
+
+    private static class TokenExpiry implements Expiry<String, VerifiedToken> {
+
+        @Override
+        public long expireAfterCreate(String key, VerifiedToken token, long currentTime) {
+            Duration untilExpiry = Duration.between(Instant.now(), token.expiresAt());
+            if (untilExpiry.isNegative()) {
+                return 0;
+            }
+            try {
+                return untilExpiry.toNanos();
+            } catch (ArithmeticException e) {
+                // exp claims centuries out overflow a long of nanos; treat as never expiring
+                return Long.MAX_VALUE;
+            }
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, VerifiedToken token, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, token, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, VerifiedToken token, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
 }
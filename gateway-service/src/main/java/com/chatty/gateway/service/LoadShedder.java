@@ -0,0 +1,156 @@
+
+package com.chatty.gateway.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.reactive.ReactorResourceFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admits or sheds requests by priority as the gateway saturates. Pressure is the larger
+ * of two ratios: requests in flight against {@code max-pending}, and the event-loop lag
+ * against {@code max-event-loop-lag}. Each priority has a pressure threshold above which
+ * it is shed, so the least important traffic goes first and critical traffic is only
+ * refused once the gateway is completely full. The event loops are probed from a thread
+ * of their own, so a scheduled task blocking the shared scheduler can't hold the
+ * measurement back.
+ */
+@Service
+public class LoadShedder {
+
+    public enum Priority {
+        CRITICAL(1.0),
+        HIGH(0.9),
+        LOW(0.7),
+        SHEDDABLE(0.5);
+
+        private final double shedAbovePressure;
+
+        Priority(double shedAbovePressure) {
+            this.shedAbovePressure = shedAbovePressure;
+        }
+    }
+
+    private final ReactorResourceFactory reactorResourceFactory;
+    private final boolean enabled;
+    private final int maxPending;
+    private final long maxEventLoopLagNanos;
+    private final AtomicInteger pending = new AtomicInteger();
+    // Worst lag seen across the server event loops by the latest probe
+    private final AtomicLong eventLoopLagNanos = new AtomicLong();
+    private final AtomicInteger outstandingProbes = new AtomicInteger();
+    private volatile long probeStartedNanos;
+    private final Map<Priority, Counter> shed = new EnumMap<>(Priority.class);
+    private final long probeIntervalMillis;
+    private ScheduledExecutorService probeScheduler;
+
+    public LoadShedder(ReactorResourceFactory reactorResourceFactory,
+                       MeterRegistry meterRegistry,
+                       @Value("${gateway.load-shedding.enabled:true}") boolean enabled,
+                       @Value("${gateway.load-shedding.max-pending:1000}") int maxPending,
+                       @Value("${gateway.load-shedding.max-event-loop-lag:50ms}") Duration maxEventLoopLag,
+                       @Value("${gateway.load-shedding.probe-interval-ms:100}") long probeIntervalMillis) {
+        this.reactorResourceFactory = reactorResourceFactory;
+        this.enabled = enabled;
+        this.maxPending = maxPending;
+        this.maxEventLoopLagNanos = maxEventLoopLag.toNanos();
+        this.probeIntervalMillis = probeIntervalMillis;
+
+        for (Priority priority : Priority.values()) {
+            shed.put(priority, Counter.builder("gateway.load-shedding.shed")
+                    .description("Requests refused by the load shedder")
+                    .tag("priority", priority.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        Gauge.builder("gateway.load-shedding.pending", pending, AtomicInteger::get)
+                .description("Requests currently admitted and not yet completed")
+                .register(meterRegistry);
+        Gauge.builder("gateway.load-shedding.event-loop-lag", eventLoopLagNanos, lag -> lag.get() / 1e9)
+                .baseUnit("seconds")
+                .description("Delay before a task submitted to the server event loops ran")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Admits a request, returning {@code false} if its priority is being shed. Every
+     * admitted request must be released with {@link #release()}.
+     */
+    public boolean tryAdmit(Priority priority) {
+        if (!enabled) {
+            return true;
+        }
+        int inFlight = pending.incrementAndGet();
+        double pressure = Math.max((double) inFlight / maxPending, (double) eventLoopLagNanos.get() / maxEventLoopLagNanos);
+        if (pressure > priority.shedAbovePressure) {
+            pending.decrementAndGet();
+            shed.get(priority).increment();
+            return false;
+        }
+        return true;
+    }
+
+    public void release() {
+        if (enabled) {
+            pending.decrementAndGet();
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        probeScheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("event-loop-probe").daemon().factory());
+        probeScheduler.scheduleWithFixedDelay(this::probeEventLoops, probeIntervalMillis, probeIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (probeScheduler != null) {
+            probeScheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Submits a timestamped task to every server event loop and records the longest wait.
+     * A loop that has not run the previous probe yet is still backed up, so its wait so
+     * far counts as the lag instead of starting a new probe.
+     */
+    private void probeEventLoops() {
+        long now = System.nanoTime();
+        if (outstandingProbes.get() > 0) {
+            eventLoopLagNanos.accumulateAndGet(now - probeStartedNanos, Math::max);
+            return;
+        }
+
+        EventLoopGroup loops = reactorResourceFactory.getLoopResources().onServer(true);
+        AtomicLong worst = new AtomicLong();
+        probeStartedNanos = now;
+        for (EventExecutor loop : loops) {
+            outstandingProbes.incrementAndGet();
+            loop.execute(() -> {
+                worst.accumulateAndGet(System.nanoTime() - now, Math::max);
+                if (outstandingProbes.decrementAndGet() == 0) {
+                    eventLoopLagNanos.set(worst.get());
+                }
+            });
+        }
+    }
+}
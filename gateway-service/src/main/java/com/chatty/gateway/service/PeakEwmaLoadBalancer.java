@@ -0,0 +1,100 @@
+
+package com.chatty.gateway.service;
+
+import com.chatty.gateway.service.InstanceLoadTracker.InstanceLoad;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.client.loadbalancer.EmptyResponse;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.loadbalancer.core.NoopServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Power-of-two-choices load balancer. It samples two distinct instances at random and
+ * sends the request to the one with the lower peak-EWMA cost from
+ * {@link InstanceLoadTracker}. Instances ejected by outlier detection are skipped, up to
+ * {@code max-ejection-percent} of all instances. Past that cap the earliest ejected
+ * instances stay skipped and any further ejected ones keep taking traffic.
+ */
+public class PeakEwmaLoadBalancer implements ReactorServiceInstanceLoadBalancer {
+
+    private final ObjectProvider<ServiceInstanceListSupplier> serviceInstanceListSupplierProvider;
+    private final String serviceId;
+    private final InstanceLoadTracker instanceLoadTracker;
+    private final int maxEjectionPercent;
+
+    public PeakEwmaLoadBalancer(ObjectProvider<ServiceInstanceListSupplier> serviceInstanceListSupplierProvider,
+                                String serviceId,
+                                InstanceLoadTracker instanceLoadTracker,
+                                int maxEjectionPercent) {
+        this.serviceInstanceListSupplierProvider = serviceInstanceListSupplierProvider;
+        this.serviceId = serviceId;
+        this.instanceLoadTracker = instanceLoadTracker;
+        this.maxEjectionPercent = maxEjectionPercent;
+    }
+
+    @Override
+    public Mono<Response<ServiceInstance>> choose(Request request) {
+        ServiceInstanceListSupplier supplier = serviceInstanceListSupplierProvider
+                .getIfAvailable(NoopServiceInstanceListSupplier::new);
+        return supplier.get(request).next().map(this::choose);
+    }
+
+    private Response<ServiceInstance> choose(List<ServiceInstance> instances) {
+        if (instances.isEmpty()) {
+            return new EmptyResponse();
+        }
+        if (instances.size() == 1) {
+            return new DefaultResponse(instances.get(0));
+        }
+
+        List<ServiceInstance> candidates = available(instances);
+        if (candidates.size() == 1) {
+            return new DefaultResponse(candidates.get(0));
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        ServiceInstance a = candidates.get(first);
+        ServiceInstance b = candidates.get(second);
+        return new DefaultResponse(
+                instanceLoadTracker.loadOf(a).cost() <= instanceLoadTracker.loadOf(b).cost() ? a : b);
+    }
+
+    private List<ServiceInstance> available(List<ServiceInstance> instances) {
+        long now = System.nanoTime();
+        List<ServiceInstance> available = new ArrayList<>(instances.size());
+        List<ServiceInstance> ejected = new ArrayList<>();
+        for (ServiceInstance instance : instances) {
+            InstanceLoad load = instanceLoadTracker.loadOf(instance);
+            (load.isEjected(now) ? ejected : available).add(instance);
+        }
+
+        int maxEjected = instances.size() * maxEjectionPercent / 100;
+        if (ejected.size() > maxEjected) {
+            // Past the cap, the instances ejected first stay out and later ejections are
+            // ignored, so the set of skipped instances does not churn
+            ejected.sort(Comparator.comparingLong(
+                    (ServiceInstance instance) -> instanceLoadTracker.loadOf(instance).ejectedAtNanos() - now));
+            available.addAll(ejected.subList(maxEjected, ejected.size()));
+        }
+        return available.isEmpty() ? instances : available;
+    }
+
+    public String getServiceId() {
+        return serviceId;
+    }
+}
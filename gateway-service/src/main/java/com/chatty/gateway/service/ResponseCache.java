@@ -0,0 +1,113 @@
+
+package com.chatty.gateway.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded store of customer-service GET responses, keyed by authenticated user and
+ * request path. Each entry is tagged with the customer it describes so writes to that
+ * customer can drop every cached view of it. An index from customer to cache keys keeps
+ * that proportional to the customer's own entries. Entries also expire after a short TTL,
+ * which bounds staleness for writes that do not pass through this gateway.
+ */
+@Service
+public class ResponseCache {
+
+    private static final String CACHE_NAME = "gateway.response-cache";
+
+    private final Cache<CacheKey, CachedResponse> cache;
+    private final Map<String, Set<CacheKey>> keysByCustomer = new ConcurrentHashMap<>();
+    private final int maxEntryBytes;
+    // Bumped on every invalidation so responses fetched before it are not stored after it
+    private final AtomicLong epoch = new AtomicLong();
+
+    public ResponseCache(MeterRegistry meterRegistry,
+                         @Value("${gateway.response-cache.maximum-size:10000}") long maximumSize,
+                         @Value("${gateway.response-cache.ttl:30s}") Duration ttl,
+                         @Value("${gateway.response-cache.max-entry-bytes:65536}") int maxEntryBytes) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                // Run on the evicting thread so the index is updated before a re-put of the key
+                .executor(Runnable::run)
+                .removalListener(this::onRemoval)
+                .recordStats()
+                .build();
+        this.maxEntryBytes = maxEntryBytes;
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    public CachedResponse get(CacheKey key) {
+        return cache.getIfPresent(key);
+    }
+
+    public long currentEpoch() {
+        return epoch.get();
+    }
+
+    /**
+     * Stores a response unless it is too large or an invalidation has happened since
+     * {@code fetchEpoch}, in which case the response may already be stale.
+     */
+    public void put(CacheKey key, CachedResponse response, long fetchEpoch) {
+        if (response.body().length > maxEntryBytes || epoch.get() != fetchEpoch) {
+            return;
+        }
+        cache.put(key, response);
+        if (response.customerId() != null) {
+            keysByCustomer.compute(response.customerId(), (customerId, keys) -> {
+                Set<CacheKey> indexed = keys != null ? keys : ConcurrentHashMap.newKeySet();
+                indexed.add(key);
+                return indexed;
+            });
+        }
+        // An invalidation that bumped the epoch before this put landed may have already
+        // taken the customer's keys; since the epoch is read after the key is indexed, one
+        // of the two always sees the other
+        if (epoch.get() != fetchEpoch) {
+            cache.asMap().remove(key, response);
+        }
+    }
+
+    public void invalidateCustomer(String customerId) {
+        epoch.incrementAndGet();
+        Set<CacheKey> keys = keysByCustomer.remove(customerId);
+        if (keys != null) {
+            cache.invalidateAll(keys);
+        }
+    }
+
+    /**
+     * Unindexes entries that expired or were evicted for size. Explicit removals are left
+     * alone: invalidation has already dropped the customer's keys, and a stale key in the
+     * index only costs a no-op removal later.
+     */
+    private void onRemoval(CacheKey key, CachedResponse response, RemovalCause cause) {
+        if (!cause.wasEvicted() || key == null || response == null || response.customerId() == null
+                || cache.asMap().containsKey(key)) {
+            return;
+        }
+        keysByCustomer.computeIfPresent(response.customerId(), (customerId, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    public record CacheKey(String userId, String path) {
+    }
+
+    public record CachedResponse(byte[] body, String contentType, String etag, String customerId) {
+    }
+}
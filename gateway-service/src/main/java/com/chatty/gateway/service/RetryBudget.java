@@ -0,0 +1,121 @@
+
+package com.chatty.gateway.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Caps the extra attempts (retries and hedges) sent to each route at a fraction of its
+ * recent successful requests, plus a small floor so an idle route can still retry.
+ * When a downstream slows down and most attempts fail, the budget drains and further
+ * failures are returned as they are instead of multiplying the load on it.
+ */
+@Service
+public class RetryBudget {
+
+    private final double retryRatio;
+    private final int minRetriesPerSecond;
+    private final int windowSeconds;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, RouteBudget> routes = new ConcurrentHashMap<>();
+
+    public RetryBudget(MeterRegistry meterRegistry,
+                       @Value("${gateway.retry.budget.ratio:0.1}") double retryRatio,
+                       @Value("${gateway.retry.budget.min-retries-per-second:1}") int minRetriesPerSecond,
+                       @Value("${gateway.retry.budget.window:10s}") Duration window) {
+        this.meterRegistry = meterRegistry;
+        this.retryRatio = retryRatio;
+        this.minRetriesPerSecond = minRetriesPerSecond;
+        this.windowSeconds = (int) Math.max(1, window.toSeconds());
+    }
+
+    public void recordSuccess(String routeId) {
+        budget(routeId).successes.increment(nowSeconds());
+    }
+
+    /**
+     * Takes one extra attempt from the route's budget, returning {@code false} if none is left.
+     */
+    public boolean tryAcquireRetry(String routeId) {
+        RouteBudget budget = budget(routeId);
+        long now = nowSeconds();
+        double allowed = (double) minRetriesPerSecond * windowSeconds + retryRatio * budget.successes.sum(now);
+
+        if (budget.retries.sum(now) >= allowed) {
+            budget.denied.increment();
+            return false;
+        }
+        budget.retries.increment(now);
+        budget.granted.increment();
+        return true;
+    }
+
+    private RouteBudget budget(String routeId) {
+        return routes.computeIfAbsent(routeId, id -> new RouteBudget(
+                new SlidingWindowCounter(windowSeconds),
+                new SlidingWindowCounter(windowSeconds),
+                counter(id, "granted"),
+                counter(id, "denied")));
+    }
+
+    private Counter counter(String routeId, String outcome) {
+        return Counter.builder("gateway.retry.budget")
+                .description("Retry and hedge attempts checked against the route's retry budget")
+                .tag("route", routeId)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static long nowSeconds() {
+        return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+    }
+
+    private record RouteBudget(SlidingWindowCounter successes, SlidingWindowCounter retries,
+                               Counter granted, Counter denied) {
+    }
+
+    /**
+     * Counts events over the last {@code size} seconds in one-second buckets. Buckets are
+     * reused as time moves on; an increment racing with a bucket reset may be lost, which
+     * is fine for a budget.
+     */
+    static final class SlidingWindowCounter {
+
+        private final int size;
+        private final AtomicLongArray counts;
+        private final AtomicLongArray bucketSeconds;
+
+        SlidingWindowCounter(int size) {
+            this.size = size;
+            this.counts = new AtomicLongArray(size);
+            this.bucketSeconds = new AtomicLongArray(size);
+        }
+
+        void increment(long nowSeconds) {
+            int index = (int) Math.floorMod(nowSeconds, (long) size);
+            long bucketSecond = bucketSeconds.get(index);
+            if (bucketSecond != nowSeconds && bucketSeconds.compareAndSet(index, bucketSecond, nowSeconds)) {
+                counts.set(index, 0);
+            }
+            counts.incrementAndGet(index);
+        }
+
+        long sum(long nowSeconds) {
+            long total = 0;
+            for (int i = 0; i < size; i++) {
+                if (nowSeconds - bucketSeconds.get(i) < size) {
+                    total += counts.get(i);
+                }
+            }
+            return total;
+        }
+    }
+}
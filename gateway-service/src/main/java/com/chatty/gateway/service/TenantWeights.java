@@ -0,0 +1,79 @@
+
+package com.chatty.gateway.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Fair-queuing weight of each customer, taken from
+ * {@code apiConfiguration.requestsPerMinute} in the customer profile. Lookups never
+ * wait: a customer whose profile has not been loaded yet gets the default weight while
+ * it loads in the background, and loaded weights are refreshed periodically.
+ */
+@Service
+@Slf4j
+public class TenantWeights {
+
+    private static final String CACHE_NAME = "gateway.tenant-weights";
+
+    private final WebClient customerServiceWebClient;
+    private final double defaultWeight;
+    private final AsyncLoadingCache<String, Double> weights;
+
+    public TenantWeights(@Qualifier("customerServiceWebClient") WebClient customerServiceWebClient,
+                         MeterRegistry meterRegistry,
+                         @Value("${gateway.fair-queuing.default-weight:60}") double defaultWeight,
+                         @Value("${gateway.fair-queuing.weight-refresh:5m}") Duration refresh,
+                         @Value("${gateway.fair-queuing.weight-expiry:30m}") Duration expiry,
+                         @Value("${gateway.fair-queuing.maximum-tenants:100000}") long maximumTenants) {
+        this.customerServiceWebClient = customerServiceWebClient;
+        this.defaultWeight = defaultWeight;
+        this.weights = Caffeine.newBuilder()
+                .maximumSize(maximumTenants)
+                .refreshAfterWrite(refresh)
+                .expireAfterWrite(expiry)
+                .recordStats()
+                .buildAsync((customerId, executor) -> fetchWeight(customerId));
+        CaffeineCacheMetrics.monitor(meterRegistry, weights, CACHE_NAME);
+    }
+
+    public double weightOf(String customerId) {
+        if (customerId == null) {
+            return defaultWeight;
+        }
+        CompletableFuture<Double> weight = weights.get(customerId);
+        return weight.isDone() && !weight.isCompletedExceptionally() ? weight.join() : defaultWeight;
+    }
+
+    private CompletableFuture<Double> fetchWeight(String customerId) {
+        return customerServiceWebClient
+                .get()
+                .uri("/api/v1/customers/{customerId}", customerId)
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .map(profile -> {
+                    int requestsPerMinute = profile.path("apiConfiguration").path("requestsPerMinute").asInt();
+                    return requestsPerMinute > 0 ? (double) requestsPerMinute : defaultWeight;
+                })
+                .defaultIfEmpty(defaultWeight)
+                .onErrorResume(e -> {
+                    log.debug("Could not load fair-queuing weight for customer {}: {}", customerId, e.getMessage());
+                    return Mono.just(defaultWeight);
+                })
+                .toFuture();
+    }
+}
@@ -0,0 +1,105 @@
+
+package com.chatty.gateway.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free per-key token buckets. Each bucket holds {@code limitPerMinute} tokens and
+ * refills continuously at {@code limitPerMinute} tokens per minute. Buckets that have
+ * not been touched for the idle timeout are evicted, which is safe because an idle
+ * bucket has long since refilled to capacity.
+ */
+@Service
+public class TokenBucketRateLimiter {
+
+    private static final long NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    private final Cache<String, TokenBucket> buckets;
+
+    public TokenBucketRateLimiter(@Value("${gateway.rate-limit.idle-timeout:5m}") Duration idleTimeout,
+                                  @Value("${gateway.rate-limit.max-buckets:100000}") long maxBuckets) {
+        // A bucket refills completely within a minute, so never evict one earlier than that
+        Duration expireAfter = idleTimeout.compareTo(Duration.ofMinutes(1)) < 0 ? Duration.ofMinutes(1) : idleTimeout;
+        this.buckets = Caffeine.newBuilder()
+                .expireAfterAccess(expireAfter)
+                .maximumSize(maxBuckets)
+                .build();
+    }
+
+    public RateLimitDecision tryConsume(String key, int limitPerMinute) {
+        int limit = Math.max(1, limitPerMinute);
+        long now = System.nanoTime();
+
+        TokenBucket bucket = buckets.get(key, k -> new TokenBucket(limit, now));
+        if (bucket.capacity != limit) {
+            // The key's limit changed; start over with the new capacity
+            TokenBucket resized = new TokenBucket(limit, now);
+            bucket = buckets.asMap().merge(key, resized, (current, candidate) ->
+                    current.capacity == candidate.capacity ? current : candidate);
+        }
+        return bucket.tryConsume(now);
+    }
+
+    /**
+     * Token bucket stored as a single "theoretical arrival time": the instant at which the
+     * bucket would be full again. Consuming a token pushes it one emission interval into
+     * the future, so every update is a single CAS on one long.
+     */
+    static final class TokenBucket {
+
+        private final int capacity;
+        private final long emissionIntervalNanos;
+        private final long burstToleranceNanos;
+        private final AtomicLong fullAt;
+
+        TokenBucket(int capacity, long now) {
+            this.capacity = capacity;
+            this.emissionIntervalNanos = NANOS_PER_MINUTE / capacity;
+            this.burstToleranceNanos = emissionIntervalNanos * capacity;
+            this.fullAt = new AtomicLong(now);
+        }
+
+        RateLimitDecision tryConsume(long now) {
+            while (true) {
+                long current = fullAt.get();
+                long base = Math.max(current, now);
+                long next = base + emissionIntervalNanos;
+                long untilFull = next - now;
+
+                if (untilFull > burstToleranceNanos) {
+                    return new RateLimitDecision(false, capacity, 0, base - now, untilFull - burstToleranceNanos);
+                }
+                if (fullAt.compareAndSet(current, next)) {
+                    long remaining = (burstToleranceNanos - untilFull) / emissionIntervalNanos;
+                    return new RateLimitDecision(true, capacity, remaining, untilFull, 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Outcome of a rate limit check, with the values needed for the standard
+     * {@code X-RateLimit-*} and {@code Retry-After} response headers.
+     */
+    public record RateLimitDecision(boolean allowed, int limit, long remaining, long resetNanos, long retryAfterNanos) {
+
+        public long resetSeconds() {
+            return toCeilSeconds(resetNanos);
+        }
+
+        public long retryAfterSeconds() {
+            return Math.max(1, toCeilSeconds(retryAfterNanos));
+        }
+
+        private static long toCeilSeconds(long nanos) {
+            return (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+        }
+    }
+}
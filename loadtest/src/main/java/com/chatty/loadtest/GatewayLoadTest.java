@@ -0,0 +1,277 @@
+
+package com.chatty.loadtest;
+
+import com.chatty.gateway.GatewayServiceApplication;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Boots {@link GatewayServiceApplication} against {@link StubServices}, with static
+ * discovery in place of Eureka, and drives an open-model load through it: requests are
+ * sent on a fixed schedule at the target rate regardless of how fast responses come
+ * back. Latency is measured from each request's scheduled send time, so a stalled
+ * gateway shows up as latency rather than as a silently lower request rate.
+ *
+ * <p>Options, all optional:
+ * <pre>
+ *   --rps=500                  target request rate
+ *   --duration=30s             measured run length, after warmup
+ *   --warmup=10s               unmeasured run length before that
+ *   --mix=jwt:30,api-key:60,invalid-key:10
+ *   --api-keys=1000            distinct valid API keys
+ *   --users=100                distinct JWT subjects
+ *   --chatbot-latency=20ms     stub response delays
+ *   --customer-latency=5ms
+ *   --auth-latency=2ms
+ *   --connections=2000         client connection pool size
+ *   --timeout=10s              per-request timeout, counted as an error
+ *   --replica=true             validate keys from the replica rather than the cache
+ * </pre>
+ */
+public class GatewayLoadTest {
+
+    private static final String JWT_SECRET_KEY = "404E635266556A586E3272357538782F413F4428472B4B6250645367566B5970";
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    public enum Scenario {
+        JWT("jwt", 200),
+        API_KEY("api-key", 200),
+        INVALID_KEY("invalid-key", 401);
+
+        private final String name;
+        private final int expectedStatus;
+
+        Scenario(String name, int expectedStatus) {
+            this.name = name;
+            this.expectedStatus = expectedStatus;
+        }
+
+        static Scenario fromName(String name) {
+            for (Scenario scenario : values()) {
+                if (scenario.name.equals(name)) {
+                    return scenario;
+                }
+            }
+            throw new IllegalArgumentException("Unknown scenario " + name);
+        }
+    }
+
+    private final LoadTestOptions options;
+    private final Map<Scenario, ScenarioStats> stats = new EnumMap<>(Scenario.class);
+    private final List<String> tokens = new ArrayList<>();
+    private final Scenario[] schedule;
+
+    GatewayLoadTest(LoadTestOptions options) {
+        this.options = options;
+        for (Scenario scenario : Scenario.values()) {
+            stats.put(scenario, new ScenarioStats());
+        }
+        for (int i = 0; i < options.users(); i++) {
+            tokens.add(Jwts.builder()
+                    .setSubject("load-user-" + i + "@example.com")
+                    .setIssuedAt(new Date())
+                    .setExpiration(new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1)))
+                    .signWith(Keys.hmacShaKeyFor(JWT_SECRET_KEY.getBytes()), SignatureAlgorithm.HS256)
+                    .compact());
+        }
+        this.schedule = buildSchedule(options.mix());
+    }
+
+    public static void main(String[] args) {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+
+        try (StubServices stubs = new StubServices(options);
+             ConfigurableApplicationContext gateway = startGateway(stubs, options)) {
+            int port = ((WebServerApplicationContext) gateway).getWebServer().getPort();
+            new GatewayLoadTest(options).run(port);
+        }
+    }
+
+    private static ConfigurableApplicationContext startGateway(StubServices stubs, LoadTestOptions options) {
+        // Passed as command line arguments so they override the gateway's application.yml
+        return new SpringApplicationBuilder(GatewayServiceApplication.class).run(
+                "--server.port=0",
+                "--eureka.client.enabled=false",
+                "--spring.cloud.discovery.client.simple.instances.auth-service[0].uri=" + stubs.authServiceUri(),
+                "--spring.cloud.discovery.client.simple.instances.customer-service[0].uri=" + stubs.customerServiceUri(),
+                "--spring.cloud.discovery.client.simple.instances.chatbot-service[0].uri=" + stubs.chatbotServiceUri(),
+                "--gateway.api-key-replica.enabled=" + options.replica(),
+                "--security.jwt.secret-key=" + JWT_SECRET_KEY,
+                // Request-level debug logging would dominate the measurement
+                "--logging.level.root=WARN",
+                "--logging.level.org.springframework.cloud.gateway=WARN",
+                "--logging.level.reactor.netty=WARN",
+                "--logging.level.com.chatty.gateway=WARN");
+    }
+
+    void run(int port) {
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("loadtest")
+                .maxConnections(options.connections())
+                .pendingAcquireMaxCount(-1)
+                .pendingAcquireTimeout(options.timeout())
+                .build();
+        HttpClient client = HttpClient.create(connectionProvider)
+                .baseUrl("http://localhost:" + port)
+                .responseTimeout(options.timeout());
+
+        // Give the replica and Bloom filter a moment to load before traffic starts
+        LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(2));
+
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / options.rps();
+        long start = System.nanoTime();
+        long measureFrom = start + options.warmup().toNanos();
+        long end = measureFrom + options.duration().toNanos();
+        AtomicLong inFlight = new AtomicLong();
+        Random random = new Random(42);
+
+        System.out.printf("Warming up for %s, then measuring %s at %d requests/s%n",
+                options.warmup(), options.duration(), options.rps());
+
+        for (long i = 0; ; i++) {
+            long intended = start + i * intervalNanos;
+            if (intended >= end) {
+                break;
+            }
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            Scenario scenario = schedule[(int) (i % schedule.length)];
+            boolean measured = intended >= measureFrom;
+            inFlight.incrementAndGet();
+            send(client, scenario, random)
+                    .timeout(options.timeout())
+                    .onErrorReturn(-1)
+                    .subscribe(status -> {
+                        if (measured) {
+                            stats.get(scenario).record(status, scenario, intended);
+                        }
+                        inFlight.decrementAndGet();
+                    });
+        }
+
+        long drainDeadline = System.nanoTime() + options.timeout().toNanos() + TimeUnit.SECONDS.toNanos(1);
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+
+        report(options.duration());
+        connectionProvider.disposeLater().block();
+    }
+
+    private Mono<Integer> send(HttpClient client, Scenario scenario, Random random) {
+        HttpClient.ResponseReceiver<?> request = switch (scenario) {
+            case JWT -> client
+                    .headers(headers -> headers.set("Authorization", "Bearer " + tokens.get(random.nextInt(tokens.size()))))
+                    .get()
+                    .uri("/api/v1/customers/customer-1");
+            case API_KEY -> client
+                    .headers(headers -> headers.set("X-API-KEY", StubServices.apiKey(random.nextInt(options.apiKeys()))))
+                    .get()
+                    .uri("/api/v1/chatbot/messages");
+            case INVALID_KEY -> client
+                    .headers(headers -> headers.set("X-API-KEY", "chatty_unknown_" + random.nextLong()))
+                    .get()
+                    .uri("/api/v1/chatbot/messages");
+        };
+        // Drain the body so the connection goes back to the pool
+        return request.response((response, body) -> body.then(Mono.just(response.status().code()))).single();
+    }
+
+    private void report(Duration measured) {
+        double seconds = measured.toNanos() / 1e9;
+        System.out.println();
+        System.out.printf("%-12s %10s %10s %8s %10s %10s %10s %10s  %s%n",
+                "scenario", "requests", "req/s", "errors", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "statuses");
+
+        Histogram total = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+        long totalRequests = 0;
+        long totalErrors = 0;
+        for (Map.Entry<Scenario, ScenarioStats> entry : stats.entrySet()) {
+            ScenarioStats scenarioStats = entry.getValue();
+            Histogram histogram = scenarioStats.latencies.getIntervalHistogram();
+            long requests = histogram.getTotalCount();
+            if (requests == 0) {
+                continue;
+            }
+            long errors = scenarioStats.errors.sum();
+            total.add(histogram);
+            totalRequests += requests;
+            totalErrors += errors;
+            printRow(entry.getKey().name, histogram, requests / seconds, errors, scenarioStats.statuses.toString());
+        }
+        printRow("total", total, totalRequests / seconds, totalErrors, "");
+        System.out.printf("%nError rate: %.3f%%%n", totalRequests > 0 ? 100.0 * totalErrors / totalRequests : 0);
+    }
+
+    private static void printRow(String name, Histogram histogram, double throughput, long errors, String statuses) {
+        System.out.printf("%-12s %10d %10.1f %8d %10.2f %10.2f %10.2f %10.2f  %s%n",
+                name,
+                histogram.getTotalCount(),
+                throughput,
+                errors,
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMaxValue() / 1000.0,
+                statuses);
+    }
+
+    private static Scenario[] buildSchedule(Map<Scenario, Integer> mix) {
+        // Interleave scenarios by weight so the mix holds over any short window
+        List<Scenario> schedule = new ArrayList<>();
+        int totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        Map<Scenario, Integer> credit = new EnumMap<>(Scenario.class);
+        for (int i = 0; i < totalWeight; i++) {
+            Scenario next = null;
+            for (Map.Entry<Scenario, Integer> entry : mix.entrySet()) {
+                int value = credit.merge(entry.getKey(), entry.getValue(), Integer::sum);
+                if (next == null || value > credit.get(next)) {
+                    next = entry.getKey();
+                }
+            }
+            credit.merge(next, -totalWeight, Integer::sum);
+            schedule.add(next);
+        }
+        return schedule.toArray(new Scenario[0]);
+    }
+
+    private static final class ScenarioStats {
+
+        private final Recorder latencies = new Recorder(HIGHEST_TRACKABLE_MICROS, 3);
+        private final LongAdder errors = new LongAdder();
+        private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+        void record(int status, Scenario scenario, long intendedNanos) {
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedNanos);
+            latencies.recordValue(Math.min(micros, HIGHEST_TRACKABLE_MICROS));
+            statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+            if (status != scenario.expectedStatus) {
+                errors.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+
+package com.chatty.loadtest;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Command line options, given as {@code --name=value}. Durations use Spring's simple
+ * format ({@code 500ms}, {@code 30s}, {@code 2m}).
+ */
+public record LoadTestOptions(int rps,
+                              Duration duration,
+                              Duration warmup,
+                              Map<GatewayLoadTest.Scenario, Integer> mix,
+                              int apiKeys,
+                              int users,
+                              Duration chatbotLatency,
+                              Duration customerLatency,
+                              Duration authLatency,
+                              int connections,
+                              Duration timeout,
+                              boolean replica) {
+
+    public static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            values.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+
+        return new LoadTestOptions(
+                Integer.parseInt(values.getOrDefault("rps", "500")),
+                duration(values.getOrDefault("duration", "30s")),
+                duration(values.getOrDefault("warmup", "10s")),
+                mix(values.getOrDefault("mix", "jwt:30,api-key:60,invalid-key:10")),
+                Integer.parseInt(values.getOrDefault("api-keys", "1000")),
+                Integer.parseInt(values.getOrDefault("users", "100")),
+                duration(values.getOrDefault("chatbot-latency", "20ms")),
+                duration(values.getOrDefault("customer-latency", "5ms")),
+                duration(values.getOrDefault("auth-latency", "2ms")),
+                Integer.parseInt(values.getOrDefault("connections", "2000")),
+                duration(values.getOrDefault("timeout", "10s")),
+                Boolean.parseBoolean(values.getOrDefault("replica", "true")));
+    }
+
+    private static Map<GatewayLoadTest.Scenario, Integer> mix(String value) {
+        Map<GatewayLoadTest.Scenario, Integer> mix = new LinkedHashMap<>();
+        for (String part : value.split(",")) {
+            String[] weight = part.trim().split(":");
+            mix.put(GatewayLoadTest.Scenario.fromName(weight[0]), Integer.parseInt(weight[1]));
+        }
+        return mix;
+    }
+
+    private static Duration duration(String value) {
+        return DurationStyle.SIMPLE.parse(value);
+    }
+}
@@ -0,0 +1,181 @@
+
+package com.chatty.loadtest;
+
+import com.chatty.gateway.dto.ApiKeyChangeEvent;
+import com.chatty.gateway.dto.ApiKeyDetails;
+import com.chatty.gateway.service.ApiKeyDigest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Local stand-ins for auth-service, customer-service and chatbot-service, each a bare
+ * Reactor Netty server on an ephemeral port answering with a fixed delay. The auth stub
+ * implements the internal API key endpoints the gateway calls, backed by a fixed set of
+ * generated keys.
+ */
+public class StubServices implements AutoCloseable {
+
+    static final String API_KEY_PREFIX = "chatty_load_";
+    private static final String BLOOM_FILTER_ETAG = "\"1\"";
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private final Map<String, ApiKeyDetails> apiKeys = new HashMap<>();
+    private final byte[] snapshot;
+    private final byte[] bloomFilter;
+    private final Instant startedAt = Instant.now();
+
+    private final DisposableServer authService;
+    private final DisposableServer customerService;
+    private final DisposableServer chatbotService;
+
+    public StubServices(LoadTestOptions options) {
+        Instant expiresAt = Instant.now().plus(Duration.ofDays(365));
+        List<ApiKeyChangeEvent> events = new ArrayList<>();
+        BloomFilter<CharSequence> filter = BloomFilter.create(
+                Funnels.stringFunnel(StandardCharsets.UTF_8), Math.max(options.apiKeys(), 1000), 0.01);
+
+        for (int i = 0; i < options.apiKeys(); i++) {
+            String apiKey = apiKey(i);
+            ApiKeyDetails details = ApiKeyDetails.builder()
+                    .apiKeyId("key-" + i)
+                    .customerId("customer-" + (i % Math.max(1, options.users())))
+                    .valid(true)
+                    .expiresAt(expiresAt)
+                    // Generous limits, so the run measures the gateway rather than the limiters
+                    .rateLimitPerMinute(1_000_000)
+                    .environment("PROD")
+                    .build();
+            apiKeys.put(apiKey, details);
+            String apiKeyHash = ApiKeyDigest.of(apiKey);
+            events.add(ApiKeyChangeEvent.builder()
+                    .type(ApiKeyChangeEvent.ChangeType.UPSERT)
+                    .apiKeyId(details.getApiKeyId())
+                    .apiKeyHash(apiKeyHash)
+                    .details(details)
+                    .build());
+            filter.put(apiKeyHash);
+        }
+        this.snapshot = toJson(events);
+        this.bloomFilter = serialize(filter);
+
+        this.authService = HttpServer.create()
+                .port(0)
+                .route(routes -> routes
+                        .get("/internal/v1/api-keys/snapshot", (request, response) -> json(response, snapshot, Duration.ZERO))
+                        .get("/internal/v1/api-keys/changes", (request, response) -> response
+                                .header(HttpHeaderNames.CONTENT_TYPE, "text/event-stream")
+                                .sendString(Flux.just("event:connected\ndata:\n\n")
+                                        .concatWith(Flux.interval(Duration.ofSeconds(15)).map(tick -> ":heartbeat\n\n"))))
+                        .get("/internal/v1/api-keys/bloom-filter", (request, response) -> {
+                            if (BLOOM_FILTER_ETAG.equals(request.requestHeaders().get(HttpHeaderNames.IF_NONE_MATCH))) {
+                                return response.status(HttpResponseStatus.NOT_MODIFIED).send();
+                            }
+                            return response
+                                    .header(HttpHeaderNames.CONTENT_TYPE, "application/octet-stream")
+                                    .header(HttpHeaderNames.ETAG, BLOOM_FILTER_ETAG)
+                                    .header(HttpHeaderNames.LAST_MODIFIED,
+                                            DateTimeFormatter.RFC_1123_DATE_TIME.format(startedAt.atOffset(ZoneOffset.UTC)))
+                                    .header("X-Bloom-Filter-Keys", String.valueOf(options.apiKeys()))
+                                    .sendByteArray(Mono.just(bloomFilter));
+                        })
+                        .get("/internal/v1/api-keys/{apiKey}", (request, response) -> {
+                            ApiKeyDetails details = apiKeys.get(request.param("apiKey"));
+                            if (details == null) {
+                                return response.status(HttpResponseStatus.NOT_FOUND).send();
+                            }
+                            return json(response, toJson(details), options.authLatency());
+                        })
+                        .post("/internal/v1/api-keys/usage", (request, response) ->
+                                request.receive().then(json(response, "[]".getBytes(StandardCharsets.UTF_8), Duration.ZERO).then())))
+                .bindNow();
+
+        byte[] customer = "{\"id\":\"customer-1\",\"status\":\"ACTIVE\"}".getBytes(StandardCharsets.UTF_8);
+        this.customerService = HttpServer.create()
+                .port(0)
+                .route(routes -> routes.route(request -> request.uri().startsWith("/api/v1/customers/"),
+                        (request, response) -> request.receive().then(json(response, customer, options.customerLatency()).then())))
+                .bindNow();
+
+        byte[] reply = "{\"reply\":\"Hello from the chatbot stub\"}".getBytes(StandardCharsets.UTF_8);
+        this.chatbotService = HttpServer.create()
+                .port(0)
+                .route(routes -> routes.route(request -> request.uri().startsWith("/api/v1/chatbot/"),
+                        (request, response) -> request.receive().then(json(response, reply, options.chatbotLatency()).then())))
+                .bindNow();
+    }
+
+    static String apiKey(int index) {
+        return API_KEY_PREFIX + index;
+    }
+
+    public String authServiceUri() {
+        return "http://localhost:" + authService.port();
+    }
+
+    public String customerServiceUri() {
+        return "http://localhost:" + customerService.port();
+    }
+
+    public String chatbotServiceUri() {
+        return "http://localhost:" + chatbotService.port();
+    }
+
+    @Override
+    public void close() {
+        authService.disposeNow();
+        customerService.disposeNow();
+        chatbotService.disposeNow();
+    }
+
+    private Mono<Void> json(HttpServerResponse response, byte[] body, Duration latency) {
+        Mono<byte[]> payload = latency.isZero() ? Mono.just(body) : Mono.delay(latency).thenReturn(body);
+        return response
+                .header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+                .sendByteArray(payload)
+                .then();
+    }
+
+    private byte[] toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] serialize(BloomFilter<CharSequence> filter) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            filter.writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}